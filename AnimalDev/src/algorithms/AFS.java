@@ -1,15 +1,385 @@
 package algorithms;
 
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
 public class AFS
 {
+    /**
+     * Buckets smaller than this are sorted sequentially by {@link #parallelSort(int[], int)}.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * Buckets of at most this many elements are finished with insertion sort instead of another
+     * counting pass, picked from the {@link AFSBenchmark} cutoff sweep.
+     */
+    public static final int INSERTION_SORT_THRESHOLD = 64;
+
+    /**
+     * Digit width of the primitive family below, radix 256.
+     */
+    private static final int BYTE_BITS = 8;
+    private static final int BYTE_RADIX = 1 << BYTE_BITS;
+    private static final int BYTE_MASK = BYTE_RADIX - 1;
+
+    /**
+     * Above this length 16-bit keys are counted in one pass over all 65536 values, see {@link #sort(short[])}.
+     */
+    private static final int FULL_KEY_COUNT_THRESHOLD = 1 << 12;
+
+    /**
+     * String and byte string buckets: bucket 0 holds keys that ended before the current position, the
+     * byte values follow shifted by one.
+     */
+    private static final int STRING_RADIX = BYTE_RADIX + 1;
+
+    /**
+     * Strings compare character by character, so their tails switch to insertion sort sooner.
+     */
+    private static final int STRING_INSERTION_THRESHOLD = 16;
+
     public static int[] sort(int[] array, int radix) {
-        int digitCount = getDigitCount(array);
-        int divisor = (int) Math.pow(10, digitCount);
-        americanFlagSort(array, 0, array.length, divisor, radix);
+        int divisor = getDivisor(array);
+        if (array.length <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(array, 0, array.length);
+        } else {
+            americanFlagSort(array, 0, array.length, divisor, radix);
+        }
+        return array;
+    }
+
+    /**
+     * Sorts like {@link #sort(int[], int)}, but hands buckets of at least {@link #PARALLEL_THRESHOLD}
+     * elements to the common ForkJoinPool once their distribution pass is done. The result is identical
+     * to the sequential sort.
+     */
+    public static int[] parallelSort(int[] array, int radix) {
+        int divisor = getDivisor(array);
+        if (array.length <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(array, 0, array.length);
+        } else if (array.length < PARALLEL_THRESHOLD) {
+            americanFlagSort(array, 0, array.length, divisor, radix);
+        } else {
+            ForkJoinPool.commonPool().invoke(new BucketTask(array, 0, array.length, divisor, radix));
+        }
+        return array;
+    }
+
+    /**
+     * Sorts with power-of-two digits of {@code digitBits} bits each, extracted with shifts and masks.
+     * A 32-bit key always takes at most {@code ceil(32 / digitBits)} passes, so no digit count pre-scan
+     * is needed. The sign bit of every key is flipped while its digits are read, which orders the whole
+     * signed {@code int} range like {@link java.util.Arrays#sort(int[])} without an extra pass.
+     */
+    public static int[] sortBinary(int[] array, int digitBits) {
+        return sortBinary(array, digitBits, INSERTION_SORT_THRESHOLD);
+    }
+
+    /**
+     * Like {@link #sortBinary(int[], int)}, but finishes buckets of at most {@code insertionThreshold}
+     * elements with insertion sort.
+     */
+    public static int[] sortBinary(int[] array, int digitBits, int insertionThreshold) {
+        if (digitBits < 1 || digitBits > 16) {
+            throw new IllegalArgumentException("digitBits must be between 1 and 16, but was " + digitBits);
+        }
+        int shift = ((Integer.SIZE - 1) / digitBits) * digitBits;
+        if (array.length <= insertionThreshold) {
+            insertionSort(array, 0, array.length);
+        } else {
+            binaryFlagSort(array, 0, array.length, shift, digitBits, Math.max(insertionThreshold, 1));
+        }
+        return array;
+    }
+
+    /**
+     * Byte-wise (radix 256) variant of {@link #sortBinary(int[], int)}.
+     */
+    public static int[] sortBinary(int[] array) {
+        return sortBinary(array, 8);
+    }
+
+    /**
+     * Non-recursive variant of {@link #sortBinary(int[], int)} with a bounded, preallocated range stack,
+     * see {@link AfsSorter#sortIterative(int[], int, int)}.
+     */
+    public static int[] sortIterative(int[] array, int digitBits) {
+        return new AfsSorter(digitBits, INSERTION_SORT_THRESHOLD).sortIterative(array);
+    }
+
+    /**
+     * Sorts the remaining ints of the buffer, from its position to its limit, in the order of
+     * {@link #sortBinary(int[])}. Direct and mapped buffers are sorted where they live through absolute
+     * get and put calls, so off-heap data needs no heap copy; heap buffers sort their backing array.
+     * Callers that sort many buffers can keep one {@link AfsSorter} and call {@link AfsSorter#sort(IntBuffer)}.
+     */
+    public static IntBuffer sort(IntBuffer buffer) {
+        return new AfsSorter().sort(buffer);
+    }
+
+    /**
+     * Selects the n-th smallest key of array[left..right] byte by byte. Every level counts the digits
+     * of the active range like the byte engine, finds the bucket whose cumulative count holds rank n and
+     * only splits the range into the keys below, inside and above that bucket before descending into it.
+     * That takes at most four counting passes over shrinking ranges, with no comparison-based worst case.
+     * Afterwards array[n] holds the value it would have in sorted order, with no larger value before and no
+     * smaller value after it, as with {@link Quickselect#quickselect(int[], int, int, int)}.
+     */
+    public static int radixSelect(int[] array, int left, int right, int n) {
+        int[] counts = new int[BYTE_RADIX];
+        int start = left;
+        int end = right + 1;
+
+        for (int shift = Integer.SIZE - BYTE_BITS; shift >= 0 && end - start > 1; shift -= BYTE_BITS) {
+            if (end - start <= INSERTION_SORT_THRESHOLD) {
+                insertionSort(array, start, end);
+                break;
+            }
+
+            Arrays.fill(counts, 0);
+            for (int i = start; i < end; i++) {
+                counts[((array[i] ^ Integer.MIN_VALUE) >>> shift) & BYTE_MASK]++;
+            }
+            int bucket = 0;
+            int bucketStart = start;
+            while (bucketStart + counts[bucket] <= n) {
+                bucketStart += counts[bucket++];
+            }
+            int bucketEnd = bucketStart + counts[bucket];
+            if (bucketEnd - bucketStart == end - start) {
+                continue;
+            }
+
+            // three-way split around the bucket, lower buckets first
+            int lower = start;
+            int upper = end - 1;
+            int i = start;
+            while (i <= upper) {
+                int digit = ((array[i] ^ Integer.MIN_VALUE) >>> shift) & BYTE_MASK;
+                if (digit < bucket) {
+                    int tmp = array[lower];
+                    array[lower++] = array[i];
+                    array[i++] = tmp;
+                } else if (digit > bucket) {
+                    int tmp = array[upper];
+                    array[upper--] = array[i];
+                    array[i] = tmp;
+                } else {
+                    i++;
+                }
+            }
+            start = bucketStart;
+            end = bucketEnd;
+        }
+        return array[n];
+    }
+
+    /**
+     * Sorts 64-bit signed keys byte by byte, eight passes at most, in the order of
+     * {@link java.util.Arrays#sort(long[])}.
+     */
+    public static long[] sort(long[] array) {
+        if (array.length <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(array, 0, array.length);
+        } else {
+            longFlagSort(array, 0, array.length, Long.SIZE - BYTE_BITS);
+        }
+        return array;
+    }
+
+    /**
+     * Sorts 16-bit signed keys in the order of {@link java.util.Arrays#sort(short[])}. Long arrays use the
+     * whole key as a single digit: every bucket then holds one distinct value, so the array is rewritten
+     * from the counts rather than permuted. Shorter ones are widened into ints, sorted there, see
+     * {@link #sortWidened(int[])}, and copied back.
+     */
+    public static short[] sort(short[] array) {
+        if (array.length > FULL_KEY_COUNT_THRESHOLD) {
+            int[] counts = new int[1 << Short.SIZE];
+            for (short num : array) {
+                counts[num - Short.MIN_VALUE]++;
+            }
+            int to = 0;
+            for (int i = 0; i < counts.length; i++) {
+                for (int count = counts[i]; count > 0; count--) {
+                    array[to++] = (short) (i + Short.MIN_VALUE);
+                }
+            }
+        } else {
+            int[] keys = new int[array.length];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = array[i] - Short.MIN_VALUE;
+            }
+            sortWidened(keys);
+            for (int i = 0; i < keys.length; i++) {
+                array[i] = (short) (keys[i] + Short.MIN_VALUE);
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Sorts unsigned 16-bit keys like {@link #sort(short[])}, in the order of
+     * {@link java.util.Arrays#sort(char[])}.
+     */
+    public static char[] sort(char[] array) {
+        if (array.length > FULL_KEY_COUNT_THRESHOLD) {
+            int[] counts = new int[1 << Character.SIZE];
+            for (char num : array) {
+                counts[num]++;
+            }
+            int to = 0;
+            for (int i = 0; i < counts.length; i++) {
+                for (int count = counts[i]; count > 0; count--) {
+                    array[to++] = (char) i;
+                }
+            }
+        } else {
+            int[] keys = new int[array.length];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = array[i];
+            }
+            sortWidened(keys);
+            for (int i = 0; i < keys.length; i++) {
+                array[i] = (char) keys[i];
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Sorts keys between 0 and 65535 with the two low byte passes of {@link #sortBinary(int[])}; the upper
+     * two bytes are zero and are not looked at.
+     */
+    private static void sortWidened(int[] keys) {
+        if (keys.length <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(keys, 0, keys.length);
+        } else {
+            binaryFlagSort(keys, 0, keys.length, BYTE_BITS, BYTE_BITS, INSERTION_SORT_THRESHOLD);
+        }
+    }
+
+    /**
+     * Sorts signed bytes in the order of {@link java.util.Arrays#sort(byte[])}. The only digit is the
+     * whole key, so after the counting pass every bucket holds one value and is filled in directly.
+     */
+    public static byte[] sort(byte[] array) {
+        int[] counts = new int[BYTE_RADIX];
+        for (byte num : array) {
+            counts[num - Byte.MIN_VALUE]++;
+        }
+        int to = 0;
+        for (int i = 0; i < BYTE_RADIX; i++) {
+            for (int count = counts[i]; count > 0; count--) {
+                array[to++] = (byte) (i + Byte.MIN_VALUE);
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Sorts the items by an int key that is extracted exactly once per item. The keys are radix sorted
+     * together with the item positions, and the items are then moved into that order. Items with equal
+     * keys end up in no particular order.
+     */
+    public static <T> T[] sortByKey(T[] items, ToIntFunction<? super T> key) {
+        int[] keys = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            keys[i] = key.applyAsInt(items[i]);
+        }
+        int[] indices = identity(items.length);
+        keyedFlagSort(keys, indices, 0, keys.length, Integer.SIZE - BYTE_BITS);
+        return permute(items, indices);
+    }
+
+    /**
+     * Long key variant of {@link #sortByKey(Object[], ToIntFunction)}.
+     */
+    public static <T> T[] sortByLongKey(T[] items, ToLongFunction<? super T> key) {
+        long[] keys = new long[items.length];
+        for (int i = 0; i < items.length; i++) {
+            keys[i] = key.applyAsLong(items[i]);
+        }
+        int[] indices = identity(items.length);
+        keyedFlagSort(keys, indices, 0, keys.length, Long.SIZE - BYTE_BITS);
+        return permute(items, indices);
+    }
+
+    /**
+     * Returns the indices that would sort the array, leaving the array itself untouched: {@code
+     * array[result[0]] <= array[result[1]] <= ...}. Indices of equal values come in no particular order.
+     */
+    public static int[] argsort(int[] array) {
+        int[] indices = identity(array.length);
+        keyedFlagSort(array.clone(), indices, 0, array.length, Integer.SIZE - BYTE_BITS);
+        return indices;
+    }
+
+    private static int[] identity(int length) {
+        int[] indices = new int[length];
+        for (int i = 0; i < length; i++) {
+            indices[i] = i;
+        }
+        return indices;
+    }
+
+    private static <T> T[] permute(T[] items, int[] indices) {
+        T[] copy = items.clone();
+        for (int i = 0; i < items.length; i++) {
+            items[i] = copy[indices[i]];
+        }
+        return items;
+    }
+
+    /**
+     * Sorts strings in the order of {@link String#compareTo(String)}. Every level buckets the strings by
+     * one byte of the char at the current position, reading it with {@code charAt}, so no substrings or
+     * copies are made. Positions where every char fits into the low byte, as with ASCII text, take one pass
+     * instead of two.
+     */
+    public static String[] sort(String[] array) {
+        stringFlagSort(array, 0, array.length, 0);
+        return array;
+    }
+
+    /**
+     * Sorts byte strings lexicographically with bytes compared as unsigned values, a proper prefix
+     * ordering before the longer key, one byte position per level.
+     */
+    public static byte[][] sort(byte[][] array) {
+        bytesFlagSort(array, 0, array.length, 0);
         return array;
     }
 
     private static void americanFlagSort(int[] array, int start, int length, int divisor, int radix) {
+        int[] offsets = distribute(array, start, length, divisor, radix);
+
+        if (divisor > 1) {
+            for (int i = 0; i < radix; i++) {
+                int begin = (i > 0) ? offsets[i - 1] : start;
+                int end = offsets[i];
+
+                if (end - begin > INSERTION_SORT_THRESHOLD) {
+                    americanFlagSort(array, begin, end, divisor / 10, radix);
+                } else if (end - begin > 1) {
+                    insertionSort(array, begin, end);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves every element of [start, length) into its bucket for the current digit and returns the
+     * bucket end offsets.
+     */
+    private static int[] distribute(int[] array, int start, int length, int divisor, int radix) {
 
         // First pass - find counts
         int[] counts = new int[radix];
@@ -44,33 +414,569 @@ public class AFS
                 } while (from != origin);
             }
         }
+        return offsets;
+    }
 
-        if (divisor > 1) {
+    private static void binaryFlagSort(int[] array, int start, int end, int shift, int digitBits, int insertionThreshold) {
+        int radix = 1 << digitBits;
+        int[] counts = new int[radix];
+        int[] offsets = new int[radix];
+        distributeBinary(array, start, end, shift, radix - 1, counts, offsets);
+
+        if (shift > 0) {
             for (int i = 0; i < radix; i++) {
                 int begin = (i > 0) ? offsets[i - 1] : start;
-                int end = offsets[i];
+                int bucketEnd = offsets[i];
 
-                if (end - begin > 1) {
-                    americanFlagSort(array, begin, end, divisor / 10, radix);
+                if (bucketEnd - begin > insertionThreshold) {
+                    binaryFlagSort(array, begin, bucketEnd, shift - digitBits, digitBits, insertionThreshold);
+                } else if (bucketEnd - begin > 1) {
+                    insertionSort(array, begin, bucketEnd);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves every element of [start, end) into its bucket for the signed digit at {@code shift} and leaves
+     * the bucket end offsets in {@code offsets}. The counts must be zero on entry and are zero again on
+     * return. Shared with {@link AfsSorter}, which passes in its preallocated arrays.
+     */
+    static void distributeBinary(int[] array, int start, int end, int shift, int mask, int[] counts, int[] offsets) {
+        for (int i = start; i < end; i++) {
+            counts[((array[i] ^ Integer.MIN_VALUE) >>> shift) & mask]++;
+        }
+        startOffsets(counts, offsets, start);
+
+        for (int i = 0; i < counts.length; i++) {
+            while (counts[i] > 0) {
+                int origin = offsets[i];
+                int from = origin;
+                int num = array[from];
+
+                do {
+                    int digit = ((num ^ Integer.MIN_VALUE) >>> shift) & mask;
+                    int to = offsets[digit]++;
+                    counts[digit]--;
+                    int tmp = array[to];
+                    array[to] = num;
+                    num = tmp;
+                    from = to;
+                } while (from != origin);
+            }
+        }
+    }
+
+    private static void longFlagSort(long[] array, int start, int end, int shift) {
+        int[] counts = new int[BYTE_RADIX];
+        int[] offsets = new int[BYTE_RADIX];
+
+        for (int i = start; i < end; i++) {
+            counts[(int) ((array[i] ^ Long.MIN_VALUE) >>> shift) & BYTE_MASK]++;
+        }
+        startOffsets(counts, offsets, start);
+
+        for (int i = 0; i < BYTE_RADIX; i++) {
+            while (counts[i] > 0) {
+                int origin = offsets[i];
+                int from = origin;
+                long num = array[from];
+
+                do {
+                    int digit = (int) ((num ^ Long.MIN_VALUE) >>> shift) & BYTE_MASK;
+                    int to = offsets[digit]++;
+                    counts[digit]--;
+                    long tmp = array[to];
+                    array[to] = num;
+                    num = tmp;
+                    from = to;
+                } while (from != origin);
+            }
+        }
+
+        if (shift > 0) {
+            for (int i = 0; i < BYTE_RADIX; i++) {
+                int begin = (i > 0) ? offsets[i - 1] : start;
+                int bucketEnd = offsets[i];
+
+                if (bucketEnd - begin > INSERTION_SORT_THRESHOLD) {
+                    longFlagSort(array, begin, bucketEnd, shift - BYTE_BITS);
+                } else if (bucketEnd - begin > 1) {
+                    insertionSort(array, begin, bucketEnd);
+                }
+            }
+        }
+    }
+
+    /**
+     * Byte-wise flag sort of the keys that moves every index along with its key.
+     */
+    private static void keyedFlagSort(int[] keys, int[] indices, int start, int end, int shift) {
+        if (end - start <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(keys, indices, start, end);
+            return;
+        }
+
+        int[] counts = new int[BYTE_RADIX];
+        int[] offsets = new int[BYTE_RADIX];
+
+        for (int i = start; i < end; i++) {
+            counts[((keys[i] ^ Integer.MIN_VALUE) >>> shift) & BYTE_MASK]++;
+        }
+        startOffsets(counts, offsets, start);
+
+        for (int i = 0; i < BYTE_RADIX; i++) {
+            while (counts[i] > 0) {
+                int origin = offsets[i];
+                int from = origin;
+                int num = keys[from];
+                int index = indices[from];
+
+                do {
+                    int digit = ((num ^ Integer.MIN_VALUE) >>> shift) & BYTE_MASK;
+                    int to = offsets[digit]++;
+                    counts[digit]--;
+                    int tmp = keys[to];
+                    keys[to] = num;
+                    num = tmp;
+                    int tmpIndex = indices[to];
+                    indices[to] = index;
+                    index = tmpIndex;
+                    from = to;
+                } while (from != origin);
+            }
+        }
+
+        if (shift > 0) {
+            for (int i = 0; i < BYTE_RADIX; i++) {
+                int begin = (i > 0) ? offsets[i - 1] : start;
+                int bucketEnd = offsets[i];
+
+                if (bucketEnd - begin > 1) {
+                    keyedFlagSort(keys, indices, begin, bucketEnd, shift - BYTE_BITS);
+                }
+            }
+        }
+    }
+
+    private static void keyedFlagSort(long[] keys, int[] indices, int start, int end, int shift) {
+        if (end - start <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(keys, indices, start, end);
+            return;
+        }
+
+        int[] counts = new int[BYTE_RADIX];
+        int[] offsets = new int[BYTE_RADIX];
+
+        for (int i = start; i < end; i++) {
+            counts[(int) ((keys[i] ^ Long.MIN_VALUE) >>> shift) & BYTE_MASK]++;
+        }
+        startOffsets(counts, offsets, start);
+
+        for (int i = 0; i < BYTE_RADIX; i++) {
+            while (counts[i] > 0) {
+                int origin = offsets[i];
+                int from = origin;
+                long num = keys[from];
+                int index = indices[from];
+
+                do {
+                    int digit = (int) ((num ^ Long.MIN_VALUE) >>> shift) & BYTE_MASK;
+                    int to = offsets[digit]++;
+                    counts[digit]--;
+                    long tmp = keys[to];
+                    keys[to] = num;
+                    num = tmp;
+                    int tmpIndex = indices[to];
+                    indices[to] = index;
+                    index = tmpIndex;
+                    from = to;
+                } while (from != origin);
+            }
+        }
+
+        if (shift > 0) {
+            for (int i = 0; i < BYTE_RADIX; i++) {
+                int begin = (i > 0) ? offsets[i - 1] : start;
+                int bucketEnd = offsets[i];
+
+                if (bucketEnd - begin > 1) {
+                    keyedFlagSort(keys, indices, begin, bucketEnd, shift - BYTE_BITS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sorts [start, end) of strings that share their first {@code depth / 2} chars; an odd depth means
+     * the high byte of the next char is shared as well. The largest bucket is sorted by the loop rather
+     * than by recursion, which keeps the stack depth logarithmic even for long common prefixes.
+     */
+    private static void stringFlagSort(String[] array, int start, int end, int depth) {
+        int[] counts = new int[STRING_RADIX];
+        int[] offsets = new int[STRING_RADIX];
+
+        while (end - start > STRING_INSERTION_THRESHOLD) {
+            int position = depth >> 1;
+            int shift = 0;
+            int nextDepth = depth + 1;
+
+            if ((depth & 1) == 0) {
+                int highBytes = 0;
+                for (int i = start; i < end; i++) {
+                    String key = array[i];
+                    if (position < key.length()) {
+                        char c = key.charAt(position);
+                        highBytes |= c >>> BYTE_BITS;
+                        counts[(c & BYTE_MASK) + 1]++;
+                    } else {
+                        counts[0]++;
+                    }
+                }
+
+                if (highBytes == 0) {
+                    nextDepth = depth + 2;
+                } else {
+                    shift = BYTE_BITS;
+                    Arrays.fill(counts, 0);
+                    for (int i = start; i < end; i++) {
+                        counts[stringDigit(array[i], position, shift)]++;
+                    }
+                }
+            } else {
+                for (int i = start; i < end; i++) {
+                    counts[stringDigit(array[i], position, shift)]++;
+                }
+            }
+
+            // a shared prefix would cost one pass per char, so skip all of it at once
+            int first = stringDigit(array[start], position, shift);
+            if (first > 0 && counts[first] == end - start) {
+                counts[first] = 0;
+                int prefix = commonPrefix(array, start, end, position);
+                depth = prefix > position ? prefix << 1 : nextDepth;
+                continue;
+            }
+            startOffsets(counts, offsets, start);
+
+            for (int i = 0; i < STRING_RADIX; i++) {
+                while (counts[i] > 0) {
+                    int origin = offsets[i];
+                    int from = origin;
+                    String key = array[from];
+
+                    do {
+                        int digit = stringDigit(key, position, shift);
+                        int to = offsets[digit]++;
+                        counts[digit]--;
+                        String tmp = array[to];
+                        array[to] = key;
+                        key = tmp;
+                        from = to;
+                    } while (from != origin);
                 }
             }
+
+            // bucket 0 holds equal, fully consumed strings
+            int largest = 1;
+            for (int i = 2; i < STRING_RADIX; i++) {
+                if (offsets[i] - offsets[i - 1] > offsets[largest] - offsets[largest - 1]) {
+                    largest = i;
+                }
+            }
+            for (int i = 1; i < STRING_RADIX; i++) {
+                if (i != largest && offsets[i] - offsets[i - 1] > 1) {
+                    stringFlagSort(array, offsets[i - 1], offsets[i], nextDepth);
+                }
+            }
+            start = offsets[largest - 1];
+            end = offsets[largest];
+            depth = nextDepth;
         }
 
+        insertionSort(array, start, end, depth >> 1);
+    }
+
+    private static int stringDigit(String key, int position, int shift) {
+        return position < key.length() ? ((key.charAt(position) >>> shift) & BYTE_MASK) + 1 : 0;
+    }
+
+    /**
+     * Byte string counterpart of {@link #stringFlagSort(String[], int, int, int)}, one byte per depth.
+     */
+    private static void bytesFlagSort(byte[][] array, int start, int end, int depth) {
+        int[] counts = new int[STRING_RADIX];
+        int[] offsets = new int[STRING_RADIX];
+
+        while (end - start > STRING_INSERTION_THRESHOLD) {
+            for (int i = start; i < end; i++) {
+                counts[bytesDigit(array[i], depth)]++;
+            }
+
+            int first = bytesDigit(array[start], depth);
+            if (first > 0 && counts[first] == end - start) {
+                counts[first] = 0;
+                depth = commonPrefix(array, start, end, depth);
+                continue;
+            }
+            startOffsets(counts, offsets, start);
+
+            for (int i = 0; i < STRING_RADIX; i++) {
+                while (counts[i] > 0) {
+                    int origin = offsets[i];
+                    int from = origin;
+                    byte[] key = array[from];
+
+                    do {
+                        int digit = bytesDigit(key, depth);
+                        int to = offsets[digit]++;
+                        counts[digit]--;
+                        byte[] tmp = array[to];
+                        array[to] = key;
+                        key = tmp;
+                        from = to;
+                    } while (from != origin);
+                }
+            }
+
+            int largest = 1;
+            for (int i = 2; i < STRING_RADIX; i++) {
+                if (offsets[i] - offsets[i - 1] > offsets[largest] - offsets[largest - 1]) {
+                    largest = i;
+                }
+            }
+            for (int i = 1; i < STRING_RADIX; i++) {
+                if (i != largest && offsets[i] - offsets[i - 1] > 1) {
+                    bytesFlagSort(array, offsets[i - 1], offsets[i], depth + 1);
+                }
+            }
+            start = offsets[largest - 1];
+            end = offsets[largest];
+            depth++;
+        }
+
+        insertionSort(array, start, end, depth);
+    }
+
+    private static int bytesDigit(byte[] key, int position) {
+        return position < key.length ? (key[position] & BYTE_MASK) + 1 : 0;
+    }
+
+    /**
+     * Returns the length of the prefix shared by all strings in [start, end), given that they agree on
+     * the first {@code position} chars.
+     */
+    private static int commonPrefix(String[] array, int start, int end, int position) {
+        String first = array[start];
+        int prefix = first.length();
+        for (int i = start + 1; i < end && prefix > position; i++) {
+            String key = array[i];
+            int length = Math.min(prefix, key.length());
+            int j = position;
+            while (j < length && key.charAt(j) == first.charAt(j)) {
+                j++;
+            }
+            prefix = j;
+        }
+        return prefix;
+    }
+
+    private static int commonPrefix(byte[][] array, int start, int end, int position) {
+        byte[] first = array[start];
+        int prefix = first.length;
+        for (int i = start + 1; i < end && prefix > position; i++) {
+            byte[] key = array[i];
+            int length = Math.min(prefix, key.length);
+            int j = position;
+            while (j < length && key[j] == first[j]) {
+                j++;
+            }
+            prefix = j;
+        }
+        return prefix;
+    }
+
+    /**
+     * Turns the digit counts of a range that begins at {@code start} into the first write position of
+     * every bucket. All binary engines share this step.
+     */
+    static void startOffsets(int[] counts, int[] offsets, int start) {
+        offsets[0] = start;
+        for (int i = 1; i < counts.length; i++) {
+            offsets[i] = counts[i - 1] + offsets[i - 1];
+        }
+    }
+
+    private static class BucketTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] array;
+        private final int start, end, divisor, radix;
+
+        BucketTask(int[] array, int start, int end, int divisor, int radix) {
+            this.array = array;
+            this.start = start;
+            this.end = end;
+            this.divisor = divisor;
+            this.radix = radix;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start < PARALLEL_THRESHOLD) {
+                americanFlagSort(array, start, end, divisor, radix);
+                return;
+            }
+
+            int[] offsets = distribute(array, start, end, divisor, radix);
+            if (divisor > 1) {
+                List<BucketTask> tasks = new ArrayList<>();
+                for (int i = 0; i < radix; i++) {
+                    int begin = (i > 0) ? offsets[i - 1] : start;
+                    int bucketEnd = offsets[i];
+
+                    if (bucketEnd - begin > INSERTION_SORT_THRESHOLD) {
+                        tasks.add(new BucketTask(array, begin, bucketEnd, divisor / 10, radix));
+                    } else if (bucketEnd - begin > 1) {
+                        insertionSort(array, begin, bucketEnd);
+                    }
+                }
+                invokeAll(tasks);
+            }
+        }
+    }
+
+    static void insertionSort(int[] array, int start, int end) {
+        for (int i = start + 1; i < end; i++) {
+            int num = array[i];
+            int j = i - 1;
+            while (j >= start && array[j] > num) {
+                array[j + 1] = array[j];
+                j--;
+            }
+            array[j + 1] = num;
+        }
+    }
+
+    private static void insertionSort(long[] array, int start, int end) {
+        for (int i = start + 1; i < end; i++) {
+            long num = array[i];
+            int j = i - 1;
+            while (j >= start && array[j] > num) {
+                array[j + 1] = array[j];
+                j--;
+            }
+            array[j + 1] = num;
+        }
+    }
+
+    private static void insertionSort(int[] keys, int[] indices, int start, int end) {
+        for (int i = start + 1; i < end; i++) {
+            int num = keys[i];
+            int index = indices[i];
+            int j = i - 1;
+            while (j >= start && keys[j] > num) {
+                keys[j + 1] = keys[j];
+                indices[j + 1] = indices[j];
+                j--;
+            }
+            keys[j + 1] = num;
+            indices[j + 1] = index;
+        }
+    }
+
+    private static void insertionSort(long[] keys, int[] indices, int start, int end) {
+        for (int i = start + 1; i < end; i++) {
+            long num = keys[i];
+            int index = indices[i];
+            int j = i - 1;
+            while (j >= start && keys[j] > num) {
+                keys[j + 1] = keys[j];
+                indices[j + 1] = indices[j];
+                j--;
+            }
+            keys[j + 1] = num;
+            indices[j + 1] = index;
+        }
+    }
+
+    /**
+     * Insertion sort for strings that share their first {@code position} chars.
+     */
+    private static void insertionSort(String[] array, int start, int end, int position) {
+        for (int i = start + 1; i < end; i++) {
+            String key = array[i];
+            int j = i - 1;
+            while (j >= start && compareFrom(array[j], key, position) > 0) {
+                array[j + 1] = array[j];
+                j--;
+            }
+            array[j + 1] = key;
+        }
+    }
+
+    private static int compareFrom(String a, String b, int position) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = position; i < length; i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if (x != y) {
+                return x - y;
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    /**
+     * Insertion sort for byte strings that share their first {@code position} bytes.
+     */
+    private static void insertionSort(byte[][] array, int start, int end, int position) {
+        for (int i = start + 1; i < end; i++) {
+            byte[] key = array[i];
+            int j = i - 1;
+            while (j >= start && compareFrom(array[j], key, position) > 0) {
+                array[j + 1] = array[j];
+                j--;
+            }
+            array[j + 1] = key;
+        }
+    }
+
+    private static int compareFrom(byte[] a, byte[] b, int position) {
+        int length = Math.min(a.length, b.length);
+        for (int i = position; i < length; i++) {
+            int x = a[i] & BYTE_MASK;
+            int y = b[i] & BYTE_MASK;
+            if (x != y) {
+                return x - y;
+            }
+        }
+        return a.length - b.length;
     }
 
     private static int getDigit(int elem, int divisor, int radix) {
         return (elem / divisor) % radix;
     }
 
-    private static int getDigitCount(int[] array) {
-        int maxDigitCount = Integer.MIN_VALUE;
+    /**
+     * Returns the power of ten of the most significant decimal digit of the largest number.
+     */
+    private static int getDivisor(int[] array) {
+        int max = 0;
         for (int number : array) {
-            int tmp = (int) Math.log10(number) + 1;
-            if (tmp > maxDigitCount) {
-                maxDigitCount = tmp;
+            if (number < 0) {
+                throw new IllegalArgumentException("Decimal digits need non-negative numbers, use sortBinary for " + number);
+            }
+            if (number > max) {
+                max = number;
             }
         }
-        return maxDigitCount;
+
+        int divisor = 1;
+        while (max / divisor >= 10) {
+            divisor *= 10;
+        }
+        return divisor;
     }
 
     public static void main(String[] args)
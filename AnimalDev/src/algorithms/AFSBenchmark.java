@@ -0,0 +1,169 @@
+package algorithms;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Rough throughput comparison of the AFS engines against {@link Arrays#sort(int[])}.
+ * Run it on a quiet machine with enough heap, e.g. {@code java -Xmx4g algorithms.AFSBenchmark 10000000}.
+ */
+public class AFSBenchmark {
+    private static final int ROUNDS = 7;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Random random = new Random(42);
+
+        int[] signed = new int[size];
+        int[] positive = new int[size];
+        for (int i = 0; i < size; i++) {
+            signed[i] = random.nextInt();
+            positive[i] = signed[i] & Integer.MAX_VALUE;
+        }
+
+        System.out.println("signed int[" + size + "]");
+        time("Arrays.sort", signed, Arrays::sort);
+        time("AFS.sortBinary 8 bit", signed, a -> AFS.sortBinary(a, 8));
+        time("AFS.sortBinary 11 bit", signed, a -> AFS.sortBinary(a, 11));
+        AfsSorter sorter = new AfsSorter();
+        time("AfsSorter 8 bit", signed, sorter::sort);
+        time("AfsSorter iterative 8 bit", signed, sorter::sortIterative);
+        time("AmericanFlagSort LSD 8 bit", signed, a -> AmericanFlagSort.sort(a, 256));
+        time("AmericanFlagSort LSD 11 bit", signed, a -> AmericanFlagSort.sort(a, 2048));
+        allocation("AFS.sortBinary 8 bit", signed, a -> AFS.sortBinary(a, 8));
+        allocation("AfsSorter 8 bit", signed, sorter::sort);
+        allocation("AfsSorter iterative 8 bit", signed, sorter::sortIterative);
+        allocation("AmericanFlagSort LSD 11 bit", signed, a -> AmericanFlagSort.sort(a, 2048));
+
+        IntBuffer direct = ByteBuffer.allocateDirect(size * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        Supplier<IntBuffer> refill = () -> {
+            direct.clear();
+            direct.put(signed).flip();
+            return direct;
+        };
+        System.out.println("direct IntBuffer of " + size + " signed ints");
+        time("AFS.sort", size, refill, AFS::sort);
+        time("AfsSorter", size, refill, sorter::sort);
+        allocation("AFS.sort", refill, AFS::sort);
+        allocation("AfsSorter", refill, sorter::sort);
+
+        System.out.println("insertion sort cutoff, signed int[" + size + "]");
+        for (int cutoff : new int[] {1, 8, 16, 32, 48, 64, 96, 128}) {
+            time("AFS.sortBinary 8 bit <= " + cutoff, signed, a -> AFS.sortBinary(a, 8, cutoff));
+        }
+
+        System.out.println("non-negative int[" + size + "]");
+        time("Arrays.sort", positive, Arrays::sort);
+        time("AFS.sort radix 10", positive, a -> AFS.sort(a, 10));
+        time("AFS.parallelSort radix 10", positive, a -> AFS.parallelSort(a, 10));
+        time("AFS.sortBinary 8 bit", positive, a -> AFS.sortBinary(a, 8));
+
+        long[] longs = new long[size];
+        short[] shorts = new short[size];
+        char[] chars = new char[size];
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            longs[i] = random.nextLong();
+            shorts[i] = (short) random.nextInt();
+            chars[i] = (char) random.nextInt();
+            bytes[i] = (byte) random.nextInt();
+        }
+
+        Integer[] boxed = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            boxed[i] = signed[i];
+        }
+        System.out.println("Integer[" + size + "] by key");
+        time("Arrays.sort comparator", size, boxed::clone, a -> Arrays.sort(a, Comparator.comparingInt(Integer::intValue)));
+        time("AFS.sortByKey", size, boxed::clone, a -> AFS.sortByKey(a, Integer::intValue));
+        time("AFS.argsort", signed, AFS::argsort);
+
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = i;
+        }
+        System.out.println("int[" + size + "] keys with int row values");
+        time("AmericanFlagSort pairs", size, () -> new int[][] {signed.clone(), rows.clone()},
+                c -> AmericanFlagSort.sort(c[0], c[1]));
+        time("AmericanFlagSort pairs n/16", size, () -> new int[][] {signed.clone(), rows.clone()},
+                c -> AmericanFlagSort.sort(c[0], c[1], size / 16));
+
+        String[] strings = new String[size];
+        for (int i = 0; i < size; i++) {
+            strings[i] = "2016-10-" + (10 + random.nextInt(20)) + " host-" + random.nextInt(200) + " req=" + random.nextInt();
+        }
+        System.out.println("log-like String[" + size + "]");
+        time("Arrays.sort", size, strings::clone, Arrays::sort);
+        time("AFS.sort", size, strings::clone, AFS::sort);
+
+        System.out.println("long[" + size + "]");
+        time("Arrays.sort", size, longs::clone, Arrays::sort);
+        time("AFS.sort", size, longs::clone, AFS::sort);
+        System.out.println("short[" + size + "]");
+        time("Arrays.sort", size, shorts::clone, Arrays::sort);
+        time("AFS.sort", size, shorts::clone, AFS::sort);
+        System.out.println("char[" + size + "]");
+        time("Arrays.sort", size, chars::clone, Arrays::sort);
+        time("AFS.sort", size, chars::clone, AFS::sort);
+        System.out.println("byte[" + size + "]");
+        time("Arrays.sort", size, bytes::clone, Arrays::sort);
+        time("AFS.sort", size, bytes::clone, AFS::sort);
+    }
+
+    private static void time(String name, int[] data, Consumer<int[]> sorter) {
+        time(name, data.length, data::clone, sorter);
+    }
+
+    /**
+     * Prints the best of {@link #ROUNDS} runs of the sorter, each on a fresh copy of the input.
+     */
+    private static <T> void time(String name, int length, Supplier<T> copies, Consumer<T> sorter) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            T copy = copies.get();
+            long begin = System.nanoTime();
+            sorter.accept(copy);
+            best = Math.min(best, System.nanoTime() - begin);
+        }
+        System.out.printf("  %-28s %9.1f ms %9.1f Mkeys/s%n", name, best / 1e6, length * 1e3 / best);
+    }
+
+    /**
+     * Prints the bytes the current thread allocates during one warmed-up sort, not counting the input copy.
+     * Prints nothing on JVMs without the HotSpot allocation counter.
+     */
+    private static void allocation(String name, int[] data, Consumer<int[]> sorter) {
+        allocation(name, data::clone, sorter);
+    }
+
+    /**
+     * Like {@link #allocation(String, int[], Consumer)}, for any input the supplier copies or refills.
+     */
+    private static <T> void allocation(String name, Supplier<T> copies, Consumer<T> sorter) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        long thread = Thread.currentThread().getId();
+        long allocated = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            T copy = copies.get();
+            long before = threads.getThreadAllocatedBytes(thread);
+            sorter.accept(copy);
+            allocated = threads.getThreadAllocatedBytes(thread) - before;
+        }
+        System.out.printf("  %-28s %9d bytes allocated%n", name, allocated);
+    }
+}
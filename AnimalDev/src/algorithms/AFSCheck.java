@@ -0,0 +1,432 @@
+package algorithms;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Self-check of the sorting and selection entry points against {@link Arrays#sort(int[])} and its
+ * siblings, on random keys, on the extremes of every key range and on heavy duplicates. Prints every
+ * mismatch and a summary line, e.g. {@code java algorithms.AFSCheck}.
+ */
+public class AFSCheck {
+    private static final String[] INPUTS = {"random", "extremes", "duplicates"};
+    private static final int[] LENGTHS = {1_000, 100_000};
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(42);
+        boolean passed = true;
+        for (int length : LENGTHS) {
+            for (String input : INPUTS) {
+                String name = input + " " + length;
+                passed &= checkPrimitives(random, input, length, name);
+                passed &= checkInts(random, input, length, name);
+                passed &= checkKeyed(random, input, length, name);
+                passed &= checkSelection(random, input, length, name);
+                passed &= checkStrings(random, input, length, name);
+            }
+        }
+        passed &= checkFiles(random);
+        System.out.println(passed ? "all checks passed" : "checks FAILED");
+    }
+
+    /**
+     * The long, short, char and byte sorts and both kinds of IntBuffer.
+     */
+    private static boolean checkPrimitives(Random random, String input, int length, String name) {
+        long[] longs = new long[length];
+        int[] ints = new int[length];
+        short[] shorts = new short[length];
+        char[] chars = new char[length];
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            longs[i] = testKey(random, input, Long.MIN_VALUE, Long.MAX_VALUE);
+            ints[i] = (int) testKey(random, input, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            shorts[i] = (short) testKey(random, input, Short.MIN_VALUE, Short.MAX_VALUE);
+            chars[i] = (char) testKey(random, input, Character.MIN_VALUE, Character.MAX_VALUE);
+            bytes[i] = (byte) testKey(random, input, Byte.MIN_VALUE, Byte.MAX_VALUE);
+        }
+        boolean passed = true;
+
+        long[] expectedLongs = longs.clone();
+        Arrays.sort(expectedLongs);
+        passed &= check("long[] " + name, Arrays.equals(AFS.sort(longs), expectedLongs));
+
+        short[] expectedShorts = shorts.clone();
+        Arrays.sort(expectedShorts);
+        passed &= check("short[] " + name, Arrays.equals(AFS.sort(shorts), expectedShorts));
+
+        char[] expectedChars = chars.clone();
+        Arrays.sort(expectedChars);
+        passed &= check("char[] " + name, Arrays.equals(AFS.sort(chars), expectedChars));
+
+        byte[] expectedBytes = bytes.clone();
+        Arrays.sort(expectedBytes);
+        passed &= check("byte[] " + name, Arrays.equals(AFS.sort(bytes), expectedBytes));
+
+        int[] expectedInts = ints.clone();
+        Arrays.sort(expectedInts);
+        IntBuffer direct = ByteBuffer.allocateDirect(length * Integer.BYTES).asIntBuffer();
+        direct.put(ints).flip();
+        int[] sortedInts = new int[length];
+        AFS.sort(direct).get(sortedInts);
+        passed &= check("direct IntBuffer " + name, Arrays.equals(sortedInts, expectedInts));
+        IntBuffer heap = IntBuffer.wrap(ints.clone());
+        passed &= check("heap IntBuffer " + name, Arrays.equals(AFS.sort(heap).array(), expectedInts));
+        return passed;
+    }
+
+    /**
+     * Every int[] sort: the binary and iterative engines, the reusable sorter, the LSD sort and the decimal
+     * sorts, the latter on non-negative keys only.
+     */
+    private static boolean checkInts(Random random, String input, int length, String name) {
+        int[] ints = new int[length];
+        for (int i = 0; i < length; i++) {
+            ints[i] = (int) testKey(random, input, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+        int[] expected = ints.clone();
+        Arrays.sort(expected);
+        boolean passed = true;
+
+        passed &= check("AFS.sortBinary 8 bit " + name, Arrays.equals(AFS.sortBinary(ints.clone()), expected));
+        passed &= check("AFS.sortBinary 11 bit " + name, Arrays.equals(AFS.sortBinary(ints.clone(), 11), expected));
+        passed &= check("AFS.sortIterative " + name, Arrays.equals(AFS.sortIterative(ints.clone(), 8), expected));
+        passed &= check("AfsSorter " + name, Arrays.equals(new AfsSorter(11, 16).sort(ints.clone()), expected));
+        passed &= check("AmericanFlagSort " + name, Arrays.equals(AmericanFlagSort.sort(ints.clone()), expected));
+        passed &= check("AmericanFlagSort radix 256 " + name,
+                Arrays.equals(AmericanFlagSort.sort(ints.clone(), 256), expected));
+
+        int[] positive = new int[length];
+        for (int i = 0; i < length; i++) {
+            positive[i] = ints[i] & Integer.MAX_VALUE;
+        }
+        int[] expectedPositive = positive.clone();
+        Arrays.sort(expectedPositive);
+        passed &= check("AFS.sort radix 10 " + name, Arrays.equals(AFS.sort(positive.clone(), 10), expectedPositive));
+        passed &= check("AFS.parallelSort radix 10 " + name,
+                Arrays.equals(AFS.parallelSort(positive.clone(), 10), expectedPositive));
+        return passed;
+    }
+
+    /**
+     * argsort and the sorts by extracted key, which only promise an order of the keys, and the key/value
+     * sorts of {@link AmericanFlagSort}, which must also keep pairs with equal keys in their input order.
+     */
+    private static boolean checkKeyed(Random random, String input, int length, String name) {
+        int[] keys = new int[length];
+        long[] longKeys = new long[length];
+        Integer[] rows = new Integer[length];
+        for (int i = 0; i < length; i++) {
+            keys[i] = (int) testKey(random, input, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            longKeys[i] = testKey(random, input, Long.MIN_VALUE, Long.MAX_VALUE);
+            rows[i] = i;
+        }
+        boolean passed = true;
+
+        int[] order = AFS.argsort(keys);
+        passed &= check("AFS.argsort " + name, isPermutation(order) && isSortedBy(order, keys));
+
+        Integer[] byKey = AFS.sortByKey(rows.clone(), row -> keys[row]);
+        Integer[] byLongKey = AFS.sortByLongKey(rows.clone(), row -> longKeys[row]);
+        boolean keysInOrder = true;
+        boolean longKeysInOrder = true;
+        for (int i = 1; i < length; i++) {
+            keysInOrder &= keys[byKey[i - 1]] <= keys[byKey[i]];
+            longKeysInOrder &= longKeys[byLongKey[i - 1]] <= longKeys[byLongKey[i]];
+        }
+        passed &= check("AFS.sortByKey " + name, keysInOrder && isPermutation(byKey));
+        passed &= check("AFS.sortByLongKey " + name, longKeysInOrder && isPermutation(byLongKey));
+
+        // a stable sort by key leaves the rows of equal keys ascending
+        Integer[] stable = rows.clone();
+        Arrays.sort(stable, Comparator.comparingInt(row -> keys[row]));
+        int[] expectedKeys = new int[length];
+        int[] expectedRows = new int[length];
+        long[] expectedLongRows = new long[length];
+        for (int i = 0; i < length; i++) {
+            expectedKeys[i] = keys[stable[i]];
+            expectedRows[i] = stable[i];
+            expectedLongRows[i] = stable[i];
+        }
+        int[] identity = new int[length];
+        long[] longIdentity = new long[length];
+        for (int i = 0; i < length; i++) {
+            identity[i] = i;
+            longIdentity[i] = i;
+        }
+        for (int bufferLength : new int[] {length, length / 16, 1}) {
+            int[] pairKeys = keys.clone();
+            int[] values = identity.clone();
+            AmericanFlagSort.sort(pairKeys, values, bufferLength);
+            passed &= check("AmericanFlagSort int values, buffer " + bufferLength + ", " + name,
+                    Arrays.equals(pairKeys, expectedKeys) && Arrays.equals(values, expectedRows));
+
+            int[] longPairKeys = keys.clone();
+            long[] longValues = longIdentity.clone();
+            AmericanFlagSort.sort(longPairKeys, longValues, bufferLength);
+            passed &= check("AmericanFlagSort long values, buffer " + bufferLength + ", " + name,
+                    Arrays.equals(longPairKeys, expectedKeys) && Arrays.equals(longValues, expectedLongRows));
+        }
+        return passed;
+    }
+
+    /**
+     * Every {@link SelectionEngine} and the multi-rank, nth-element and partial sort helpers, checked
+     * against the sorted array at the first, last and a few random ranks.
+     */
+    private static boolean checkSelection(Random random, String input, int length, String name) {
+        int[] ints = new int[length];
+        for (int i = 0; i < length; i++) {
+            ints[i] = (int) testKey(random, input, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+        int[] sorted = ints.clone();
+        Arrays.sort(sorted);
+        int[] ranks = {0, length - 1, length / 2, random.nextInt(length), random.nextInt(length)};
+        boolean passed = true;
+
+        for (SelectionEngine engine : SelectionEngine.values()) {
+            for (int n : ranks) {
+                int[] copy = ints.clone();
+                int value = engine.select(copy, 0, length - 1, n);
+                passed &= check(engine + " rank " + n + " " + name, value == sorted[n] && isPartitioned(copy, n));
+            }
+        }
+
+        int[] copy = ints.clone();
+        int[] values = Quickselect.multiSelect(copy, ranks);
+        boolean matches = true;
+        for (int i = 0; i < ranks.length; i++) {
+            matches &= values[i] == sorted[ranks[i]] && copy[ranks[i]] == sorted[ranks[i]];
+        }
+        passed &= check("Quickselect.multiSelect " + name, matches);
+
+        copy = ints.clone();
+        passed &= check("Quickselect.nthElement " + name,
+                Quickselect.nthElement(copy, ranks[3]) == sorted[ranks[3]] && isPartitioned(copy, ranks[3]));
+
+        copy = ints.clone();
+        int k = ranks[4];
+        Quickselect.partialSort(copy, k);
+        passed &= check("Quickselect.partialSort " + name,
+                Arrays.equals(Arrays.copyOf(copy, k), Arrays.copyOf(sorted, k)) && (k == 0 || isPartitioned(copy, k - 1)));
+        return passed;
+    }
+
+    /**
+     * The String sort against {@link String#compareTo(String)} and the byte string sort against an
+     * unsigned lexicographic comparison, on keys with long shared prefixes, empty keys and non-ASCII chars.
+     */
+    private static boolean checkStrings(Random random, String input, int length, String name) {
+        String[] strings = new String[length];
+        byte[][] byteStrings = new byte[length][];
+        for (int i = 0; i < length; i++) {
+            StringBuilder key = new StringBuilder("2016-10-");
+            if (!input.equals("duplicates")) {
+                key.setLength(random.nextInt(key.length() + 1));
+            }
+            int chars = random.nextInt(8);
+            for (int c = 0; c < chars; c++) {
+                key.append((char) testKey(random, input, Character.MIN_VALUE, Character.MAX_VALUE));
+            }
+            strings[i] = key.toString();
+            byteStrings[i] = new byte[random.nextInt(8)];
+            for (int b = 0; b < byteStrings[i].length; b++) {
+                byteStrings[i][b] = (byte) testKey(random, input, Byte.MIN_VALUE, Byte.MAX_VALUE);
+            }
+        }
+        boolean passed = true;
+
+        String[] expectedStrings = strings.clone();
+        Arrays.sort(expectedStrings);
+        passed &= check("String[] " + name, Arrays.equals(AFS.sort(strings), expectedStrings));
+
+        byte[][] expectedBytes = byteStrings.clone();
+        Arrays.sort(expectedBytes, AFSCheck::compareUnsigned);
+        byte[][] sortedBytes = AFS.sort(byteStrings);
+        boolean matches = true;
+        for (int i = 0; i < length; i++) {
+            matches &= Arrays.equals(sortedBytes[i], expectedBytes[i]);
+        }
+        passed &= check("byte[][] " + name, matches);
+        return passed;
+    }
+
+    /**
+     * {@link ExternalAFS} under a tight and a roomy memory budget and {@link MappedQuickselect}, on temporary
+     * files that are removed afterwards. Both must also leave their spill directory empty.
+     */
+    private static boolean checkFiles(Random random) throws IOException {
+        Path directory = Files.createTempDirectory("afs-check");
+        Path spill = Files.createDirectory(directory.resolve("spill"));
+        Path input = directory.resolve("input");
+        Path output = directory.resolve("output");
+        boolean passed = true;
+        try {
+            for (String inputShape : INPUTS) {
+                int length = 200_000;
+                int[] ints = new int[length];
+                long[] longs = new long[length];
+                for (int i = 0; i < length; i++) {
+                    ints[i] = (int) testKey(random, inputShape, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                    longs[i] = testKey(random, inputShape, Long.MIN_VALUE, Long.MAX_VALUE);
+                }
+                int[] expectedInts = ints.clone();
+                Arrays.sort(expectedInts);
+                long[] expectedLongs = longs.clone();
+                Arrays.sort(expectedLongs);
+
+                for (long memoryBytes : new long[] {1 << 12, 1 << 24}) {
+                    String name = inputShape + " " + length + ", " + memoryBytes + " bytes";
+                    writeInts(input, ints);
+                    ExternalAFS.sortInts(input, output, spill, memoryBytes);
+                    passed &= check("ExternalAFS.sortInts " + name,
+                            Arrays.equals(readInts(output, length), expectedInts) && isEmpty(spill));
+
+                    writeLongs(input, longs);
+                    ExternalAFS.sortLongs(input, output, spill, memoryBytes);
+                    passed &= check("ExternalAFS.sortLongs " + name,
+                            Arrays.equals(readLongs(output, length), expectedLongs) && isEmpty(spill));
+                }
+
+                writeInts(input, ints);
+                for (int n : new int[] {0, length - 1, length / 2, random.nextInt(length)}) {
+                    passed &= check("MappedQuickselect rank " + n + " " + inputShape,
+                            MappedQuickselect.select(input, n, spill) == expectedInts[n] && isEmpty(spill));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(output);
+            Files.deleteIfExists(spill);
+            Files.deleteIfExists(directory);
+        }
+        return passed;
+    }
+
+    /**
+     * Returns a key of the named input shape within [min, max]: uniform bits, the extremes of the range
+     * and their neighbours, or one of 16 small values.
+     */
+    private static long testKey(Random random, String input, long min, long max) {
+        switch (input) {
+        case "extremes":
+            long[] extremes = {min, min + 1, -1, 0, 1, max - 1, max};
+            return Math.min(max, Math.max(min, extremes[random.nextInt(extremes.length)]));
+        case "duplicates":
+            return Math.min(max, Math.max(min, random.nextInt(16) - 8));
+        default:
+            return random.nextLong();
+        }
+    }
+
+    private static boolean check(String name, boolean passed) {
+        if (!passed) {
+            System.out.println("FAILED: " + name);
+        }
+        return passed;
+    }
+
+    private static boolean isPermutation(int[] indices) {
+        boolean[] seen = new boolean[indices.length];
+        for (int index : indices) {
+            if (index < 0 || index >= indices.length || seen[index]) {
+                return false;
+            }
+            seen[index] = true;
+        }
+        return true;
+    }
+
+    private static boolean isPermutation(Integer[] rows) {
+        int[] indices = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            indices[i] = rows[i];
+        }
+        return isPermutation(indices);
+    }
+
+    private static boolean isSortedBy(int[] indices, int[] keys) {
+        for (int i = 1; i < indices.length; i++) {
+            if (keys[indices[i - 1]] > keys[indices[i]]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether no key before index n is larger and no key after it is smaller than array[n].
+     */
+    private static boolean isPartitioned(int[] array, int n) {
+        for (int i = 0; i < array.length; i++) {
+            if (i < n ? array[i] > array[n] : array[i] < array[n]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int compareUnsigned(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            int difference = (a[i] & 0xff) - (b[i] & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    private static boolean isEmpty(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            return !files.iterator().hasNext();
+        }
+    }
+
+    private static void writeInts(Path file, int[] values) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            for (int value : values) {
+                out.writeInt(value);
+            }
+        }
+    }
+
+    private static void writeLongs(Path file, long[] values) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            for (long value : values) {
+                out.writeLong(value);
+            }
+        }
+    }
+
+    private static int[] readInts(Path file, int length) throws IOException {
+        int[] values = new int[length];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            for (int i = 0; i < length; i++) {
+                values[i] = in.readInt();
+            }
+            return in.read() < 0 ? values : null;
+        }
+    }
+
+    private static long[] readLongs(Path file, int length) throws IOException {
+        long[] values = new long[length];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            for (int i = 0; i < length; i++) {
+                values[i] = in.readLong();
+            }
+            return in.read() < 0 ? values : null;
+        }
+    }
+}
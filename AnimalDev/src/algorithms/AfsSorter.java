@@ -0,0 +1,201 @@
+package algorithms;
+
+import java.nio.IntBuffer;
+
+/**
+ * Reusable American flag sorter for signed {@code int} keys with power-of-two digits, ordered like
+ * {@link AFS#sortBinary(int[], int, int)}. The counts and offsets for every digit level are allocated
+ * once in the constructor and reused by all later calls, so sorting itself allocates nothing.
+ * <p>
+ * {@link #sortIterative(int[], int, int)} drives the same passes from an explicit stack of
+ * (begin, end, shift) ranges that is also preallocated, so its memory is bounded by
+ * {@code levels * radix} stack entries no matter the input and it needs only a few Java frames.
+ * <p>
+ * {@link #sort(IntBuffer)} runs the recursive passes on direct and mapped buffers in place, through absolute
+ * get and put calls and the same preallocated arrays.
+ * <p>
+ * An instance is not thread-safe; give each thread its own sorter.
+ */
+public class AfsSorter {
+    private final int digitBits;
+    private final int insertionThreshold;
+    private final int topShift;
+    private final int[][] counts;
+    private final int[][] offsets;
+    private final int[] stack;
+
+    public AfsSorter() {
+        this(8, AFS.INSERTION_SORT_THRESHOLD);
+    }
+
+    public AfsSorter(int digitBits, int insertionThreshold) {
+        if (digitBits < 1 || digitBits > 16) {
+            throw new IllegalArgumentException("digitBits must be between 1 and 16, but was " + digitBits);
+        }
+        this.digitBits = digitBits;
+        this.insertionThreshold = Math.max(insertionThreshold, 1);
+        this.topShift = ((Integer.SIZE - 1) / digitBits) * digitBits;
+
+        int levels = topShift / digitBits + 1;
+        int radix = 1 << digitBits;
+        this.counts = new int[levels][radix];
+        this.offsets = new int[levels][radix];
+        this.stack = new int[3 * levels * radix];
+    }
+
+    public int[] sort(int[] array) {
+        sort(array, 0, array.length);
+        return array;
+    }
+
+    /**
+     * Sorts the range [start, end) of the array.
+     */
+    public void sort(int[] array, int start, int end) {
+        if (end - start <= insertionThreshold) {
+            AFS.insertionSort(array, start, end);
+        } else {
+            americanFlagSort(array, start, end, 0);
+        }
+    }
+
+    /**
+     * Sorts the remaining ints of the buffer, from its position to its limit. Heap buffers sort their
+     * backing array; direct and mapped buffers are sorted where they live.
+     */
+    public IntBuffer sort(IntBuffer buffer) {
+        int start = buffer.position();
+        int end = buffer.limit();
+        if (buffer.hasArray()) {
+            int offset = buffer.arrayOffset();
+            sort(buffer.array(), offset + start, offset + end);
+        } else if (end - start <= insertionThreshold) {
+            insertionSort(buffer, start, end);
+        } else {
+            americanFlagSort(buffer, start, end, 0);
+        }
+        return buffer;
+    }
+
+    public int[] sortIterative(int[] array) {
+        sortIterative(array, 0, array.length);
+        return array;
+    }
+
+    /**
+     * Sorts the range [start, end) of the array without recursion.
+     */
+    public void sortIterative(int[] array, int start, int end) {
+        if (end - start <= insertionThreshold) {
+            AFS.insertionSort(array, start, end);
+            return;
+        }
+
+        int radix = 1 << digitBits;
+        int[] offset = offsets[0];
+        int top = 0;
+        stack[top++] = start;
+        stack[top++] = end;
+        stack[top++] = topShift;
+
+        // every pushed bucket has a smaller shift than its parent, so each digit level holds at most
+        // radix entries and the stack never outgrows levels * radix ranges
+        while (top > 0) {
+            int shift = stack[--top];
+            int rangeEnd = stack[--top];
+            int rangeStart = stack[--top];
+            AFS.distributeBinary(array, rangeStart, rangeEnd, shift, radix - 1, counts[0], offset);
+
+            if (shift > 0) {
+                for (int i = 0; i < radix; i++) {
+                    int begin = (i > 0) ? offset[i - 1] : rangeStart;
+                    int bucketEnd = offset[i];
+
+                    if (bucketEnd - begin > insertionThreshold) {
+                        stack[top++] = begin;
+                        stack[top++] = bucketEnd;
+                        stack[top++] = shift - digitBits;
+                    } else if (bucketEnd - begin > 1) {
+                        AFS.insertionSort(array, begin, bucketEnd);
+                    }
+                }
+            }
+        }
+    }
+
+    private void americanFlagSort(int[] array, int start, int end, int depth) {
+        int shift = topShift - depth * digitBits;
+        int radix = 1 << digitBits;
+        int[] offset = offsets[depth];
+        AFS.distributeBinary(array, start, end, shift, radix - 1, counts[depth], offset);
+
+        if (shift > 0) {
+            for (int i = 0; i < radix; i++) {
+                int begin = (i > 0) ? offset[i - 1] : start;
+                int bucketEnd = offset[i];
+
+                if (bucketEnd - begin > insertionThreshold) {
+                    americanFlagSort(array, begin, bucketEnd, depth + 1);
+                } else if (bucketEnd - begin > 1) {
+                    AFS.insertionSort(array, begin, bucketEnd);
+                }
+            }
+        }
+    }
+
+    private void americanFlagSort(IntBuffer buffer, int start, int end, int depth) {
+        int shift = topShift - depth * digitBits;
+        int radix = 1 << digitBits;
+        int[] count = counts[depth];
+        int[] offset = offsets[depth];
+        int mask = radix - 1;
+
+        for (int i = start; i < end; i++) {
+            count[((buffer.get(i) ^ Integer.MIN_VALUE) >>> shift) & mask]++;
+        }
+        AFS.startOffsets(count, offset, start);
+
+        for (int i = 0; i < radix; i++) {
+            while (count[i] > 0) {
+                int origin = offset[i];
+                int from = origin;
+                int num = buffer.get(from);
+
+                do {
+                    int digit = ((num ^ Integer.MIN_VALUE) >>> shift) & mask;
+                    int to = offset[digit]++;
+                    count[digit]--;
+                    int tmp = buffer.get(to);
+                    buffer.put(to, num);
+                    num = tmp;
+                    from = to;
+                } while (from != origin);
+            }
+        }
+
+        if (shift > 0) {
+            for (int i = 0; i < radix; i++) {
+                int begin = (i > 0) ? offset[i - 1] : start;
+                int bucketEnd = offset[i];
+
+                if (bucketEnd - begin > insertionThreshold) {
+                    americanFlagSort(buffer, begin, bucketEnd, depth + 1);
+                } else if (bucketEnd - begin > 1) {
+                    insertionSort(buffer, begin, bucketEnd);
+                }
+            }
+        }
+    }
+
+    private static void insertionSort(IntBuffer buffer, int start, int end) {
+        for (int i = start + 1; i < end; i++) {
+            int num = buffer.get(i);
+            int j = i - 1;
+            while (j >= start && buffer.get(j) > num) {
+                buffer.put(j + 1, buffer.get(j));
+                j--;
+            }
+            buffer.put(j + 1, num);
+        }
+    }
+}
@@ -1,43 +1,520 @@
 package algorithms;
 
+/**
+ * Stable least-significant-digit radix sort for signed {@code int} keys with power-of-two digits. Every
+ * pass scatters the keys from one buffer into the other by the next digit, so the keys ping-pong between
+ * the input array and a single auxiliary array of the same length. One pre-pass counts every digit of
+ * every key at once; a digit that is the same for all keys is skipped without moving anything. The sign
+ * bit of every key is flipped while its digits are read, which orders the keys like
+ * {@link java.util.Arrays#sort(int[])}.
+ * <p>
+ * Unlike the in-place MSD sort in {@link AFS}, the passes have no data-dependent branches and keep equal
+ * keys in their input order, at the cost of one extra buffer.
+ * <p>
+ * The same passes sort parallel key and value columns, {@link #sort(int[], long[])} and
+ * {@link #sort(int[], int[])}, without boxing them into pairs; a bounded-memory variant sorts blocks and
+ * merges them.
+ */
 public class AmericanFlagSort {
-	public static void sort(int[] array, int radix) {
-		int[] counts = new int[radix];
-		int[] offsets = new int[radix];
-		
-		for (int num : array) {
-			counts[num % radix]++; // FIXME here
-		}
-		
-		for (int i = 1; i < radix; i++) {
-			offsets[i] = offsets[i - 1] + counts[i - 1];
-		}
-
-		for (int i = 0; i < radix; i++) 
-		{
-			while (counts[i] > 0) 
-			{
-				int origin = offsets[i];
-				int from = origin;
-				int num = array[from];
-				array[from] = -1;
-
-				do {
-					int to = offsets[num % radix]++; // FIXME here
-					counts[num % radix]--;
-					int tmp = array[to];
-					array[to] = num;
-					num = tmp;
-					from = to;
-				} while (from != origin);
-			}
-		}
-		// FIXME here
-	}
-	
+
+	/**
+	 * Digit width of the key/value sorts.
+	 */
+	private static final int PAIR_DIGIT_BITS = 11;
+
+	/**
+	 * Sorts with radix 2048, 11-bit digits, which takes at most three passes.
+	 */
+	public static int[] sort(int[] array) {
+		return sort(array, 1 << 11);
+	}
+
+	/**
+	 * Sorts with digits of the given radix, a power of two from 2 to 65536. A radix of {@code 2^b} takes at
+	 * most {@code ceil(32 / b)} scatter passes.
+	 */
+	public static int[] sort(int[] array, int radix) {
+		if (radix < 2 || radix > 1 << 16 || Integer.bitCount(radix) != 1)
+			throw new IllegalArgumentException("radix must be a power of two between 2 and 65536, but was " + radix);
+		int digitBits = Integer.numberOfTrailingZeros(radix);
+		if (array.length <= AFS.INSERTION_SORT_THRESHOLD) {
+			AFS.insertionSort(array, 0, array.length);
+			return array;
+		}
+
+		int passes = (Integer.SIZE + digitBits - 1) / digitBits;
+		int mask = radix - 1;
+		int[][] counts = histograms(array, 0, array.length, digitBits, passes);
+
+		int[] from = array;
+		int[] to = null;
+		for (int pass = 0; pass < passes; pass++) {
+			int shift = pass * digitBits;
+			int[] offsets = counts[pass];
+			if (isConstant(offsets, array.length))
+				continue;
+
+			if (to == null)
+				to = new int[array.length];
+			toStartOffsets(offsets);
+			for (int num : from)
+				to[offsets[((num ^ Integer.MIN_VALUE) >>> shift) & mask]++] = num;
+
+			int[] tmp = from;
+			from = to;
+			to = tmp;
+		}
+
+		// an odd number of executed passes leaves the sorted keys in the auxiliary buffer
+		if (from != array)
+			System.arraycopy(from, 0, array, 0, array.length);
+		return array;
+	}
+
+	/**
+	 * Sorts the keys and moves every value along with its key, so {@code values[i]} still belongs to
+	 * {@code keys[i]} afterwards. Pairs with equal keys keep their input order. Takes one auxiliary buffer
+	 * per array.
+	 */
+	public static void sort(int[] keys, long[] values) {
+		sort(keys, values, keys.length);
+	}
+
+	/**
+	 * Like {@link #sort(int[], long[])}, but with auxiliary buffers of at most {@code bufferLength} pairs.
+	 * Blocks of that length are radix sorted one at a time and then merged bottom-up; a merge copies the
+	 * shorter run into the buffer when it fits and otherwise splits both runs and rotates them in place.
+	 * Smaller buffers take more merge passes.
+	 */
+	public static void sort(int[] keys, long[] values, int bufferLength) {
+		checkLengths(keys.length, values.length);
+		int length = keys.length;
+		int blockLength = Math.max(1, Math.min(bufferLength, length));
+		int[] keyBuffer = new int[blockLength];
+		long[] valueBuffer = new long[blockLength];
+
+		for (int start = 0; start < length; start += blockLength)
+			sortBlock(keys, values, start, Math.min(start + blockLength, length), keyBuffer, valueBuffer);
+
+		for (int width = blockLength; width < length; width *= 2) {
+			for (int start = 0; start < length - width; start += 2 * width)
+				merge(keys, values, start, start + width, (int) Math.min((long) start + 2 * width, length), keyBuffer,
+						valueBuffer);
+			if (width > length / 2)
+				break;
+		}
+	}
+
+	/**
+	 * Int value variant of {@link #sort(int[], long[])}.
+	 */
+	public static void sort(int[] keys, int[] values) {
+		sort(keys, values, keys.length);
+	}
+
+	/**
+	 * Int value variant of {@link #sort(int[], long[], int)}.
+	 */
+	public static void sort(int[] keys, int[] values, int bufferLength) {
+		checkLengths(keys.length, values.length);
+		int length = keys.length;
+		int blockLength = Math.max(1, Math.min(bufferLength, length));
+		int[] keyBuffer = new int[blockLength];
+		int[] valueBuffer = new int[blockLength];
+
+		for (int start = 0; start < length; start += blockLength)
+			sortBlock(keys, values, start, Math.min(start + blockLength, length), keyBuffer, valueBuffer);
+
+		for (int width = blockLength; width < length; width *= 2) {
+			for (int start = 0; start < length - width; start += 2 * width)
+				merge(keys, values, start, start + width, (int) Math.min((long) start + 2 * width, length), keyBuffer,
+						valueBuffer);
+			if (width > length / 2)
+				break;
+		}
+	}
+
+	private static void checkLengths(int keyLength, int valueLength) {
+		if (keyLength != valueLength)
+			throw new IllegalArgumentException("keys and values must have the same length, but were " + keyLength
+					+ " and " + valueLength);
+	}
+
+	/**
+	 * Radix sorts the pairs of [start, end), ping-ponging between the arrays and the buffers.
+	 */
+	private static void sortBlock(int[] keys, long[] values, int start, int end, int[] keyBuffer, long[] valueBuffer) {
+		if (end - start <= AFS.INSERTION_SORT_THRESHOLD) {
+			insertionSort(keys, values, start, end);
+			return;
+		}
+
+		int passes = (Integer.SIZE + PAIR_DIGIT_BITS - 1) / PAIR_DIGIT_BITS;
+		int mask = (1 << PAIR_DIGIT_BITS) - 1;
+		int[][] counts = histograms(keys, start, end, PAIR_DIGIT_BITS, passes);
+
+		int[] fromKeys = keys;
+		long[] fromValues = values;
+		int fromStart = start;
+		int[] toKeys = keyBuffer;
+		long[] toValues = valueBuffer;
+		int toStart = 0;
+		for (int pass = 0; pass < passes; pass++) {
+			int shift = pass * PAIR_DIGIT_BITS;
+			int[] offsets = counts[pass];
+			if (isConstant(offsets, end - start))
+				continue;
+
+			toStartOffsets(offsets);
+			for (int i = fromStart, fromEnd = fromStart + end - start; i < fromEnd; i++) {
+				int key = fromKeys[i];
+				int to = toStart + offsets[((key ^ Integer.MIN_VALUE) >>> shift) & mask]++;
+				toKeys[to] = key;
+				toValues[to] = fromValues[i];
+			}
+
+			int[] tmpKeys = fromKeys;
+			fromKeys = toKeys;
+			toKeys = tmpKeys;
+			long[] tmpValues = fromValues;
+			fromValues = toValues;
+			toValues = tmpValues;
+			int tmpStart = fromStart;
+			fromStart = toStart;
+			toStart = tmpStart;
+		}
+
+		if (fromKeys != keys) {
+			System.arraycopy(fromKeys, 0, keys, start, end - start);
+			System.arraycopy(fromValues, 0, values, start, end - start);
+		}
+	}
+
+	/**
+	 * Stably merges the sorted runs [start, middle) and [middle, end).
+	 */
+	private static void merge(int[] keys, long[] values, int start, int middle, int end, int[] keyBuffer,
+			long[] valueBuffer) {
+		if (start == middle || middle == end || keys[middle - 1] <= keys[middle])
+			return;
+
+		int leftLength = middle - start;
+		int rightLength = end - middle;
+		if (leftLength <= keyBuffer.length && leftLength <= rightLength) {
+			System.arraycopy(keys, start, keyBuffer, 0, leftLength);
+			System.arraycopy(values, start, valueBuffer, 0, leftLength);
+			int i = 0;
+			int j = middle;
+			int to = start;
+			while (i < leftLength && j < end) {
+				if (keyBuffer[i] <= keys[j]) {
+					keys[to] = keyBuffer[i];
+					values[to++] = valueBuffer[i++];
+				} else {
+					keys[to] = keys[j];
+					values[to++] = values[j++];
+				}
+			}
+			System.arraycopy(keyBuffer, i, keys, to, leftLength - i);
+			System.arraycopy(valueBuffer, i, values, to, leftLength - i);
+		} else if (rightLength <= keyBuffer.length) {
+			System.arraycopy(keys, middle, keyBuffer, 0, rightLength);
+			System.arraycopy(values, middle, valueBuffer, 0, rightLength);
+			int i = middle - 1;
+			int j = rightLength - 1;
+			int to = end - 1;
+			while (i >= start && j >= 0) {
+				if (keys[i] > keyBuffer[j]) {
+					keys[to] = keys[i];
+					values[to--] = values[i--];
+				} else {
+					keys[to] = keyBuffer[j];
+					values[to--] = valueBuffer[j--];
+				}
+			}
+			System.arraycopy(keyBuffer, 0, keys, start, j + 1);
+			System.arraycopy(valueBuffer, 0, values, start, j + 1);
+		} else {
+			// neither run fits: split both around one key, swap the inner parts and merge both halves
+			int leftCut;
+			int rightCut;
+			if (leftLength >= rightLength) {
+				leftCut = start + leftLength / 2;
+				rightCut = lowerBound(keys, middle, end, keys[leftCut]);
+			} else {
+				rightCut = middle + rightLength / 2;
+				leftCut = upperBound(keys, start, middle, keys[rightCut]);
+			}
+			rotate(keys, values, leftCut, middle, rightCut);
+			int newMiddle = leftCut + (rightCut - middle);
+			merge(keys, values, start, leftCut, newMiddle, keyBuffer, valueBuffer);
+			merge(keys, values, newMiddle, rightCut, end, keyBuffer, valueBuffer);
+		}
+	}
+
+	/**
+	 * Swaps the adjacent ranges [start, middle) and [middle, end) by three reversals.
+	 */
+	private static void rotate(int[] keys, long[] values, int start, int middle, int end) {
+		reverse(keys, values, start, middle);
+		reverse(keys, values, middle, end);
+		reverse(keys, values, start, end);
+	}
+
+	private static void reverse(int[] keys, long[] values, int start, int end) {
+		for (int i = start, j = end - 1; i < j; i++, j--) {
+			int key = keys[i];
+			keys[i] = keys[j];
+			keys[j] = key;
+			long value = values[i];
+			values[i] = values[j];
+			values[j] = value;
+		}
+	}
+
+	private static void insertionSort(int[] keys, long[] values, int start, int end) {
+		for (int i = start + 1; i < end; i++) {
+			int key = keys[i];
+			long value = values[i];
+			int j = i - 1;
+			while (j >= start && keys[j] > key) {
+				keys[j + 1] = keys[j];
+				values[j + 1] = values[j];
+				j--;
+			}
+			keys[j + 1] = key;
+			values[j + 1] = value;
+		}
+	}
+
+	private static void sortBlock(int[] keys, int[] values, int start, int end, int[] keyBuffer, int[] valueBuffer) {
+		if (end - start <= AFS.INSERTION_SORT_THRESHOLD) {
+			insertionSort(keys, values, start, end);
+			return;
+		}
+
+		int passes = (Integer.SIZE + PAIR_DIGIT_BITS - 1) / PAIR_DIGIT_BITS;
+		int mask = (1 << PAIR_DIGIT_BITS) - 1;
+		int[][] counts = histograms(keys, start, end, PAIR_DIGIT_BITS, passes);
+
+		int[] fromKeys = keys;
+		int[] fromValues = values;
+		int fromStart = start;
+		int[] toKeys = keyBuffer;
+		int[] toValues = valueBuffer;
+		int toStart = 0;
+		for (int pass = 0; pass < passes; pass++) {
+			int shift = pass * PAIR_DIGIT_BITS;
+			int[] offsets = counts[pass];
+			if (isConstant(offsets, end - start))
+				continue;
+
+			toStartOffsets(offsets);
+			for (int i = fromStart, fromEnd = fromStart + end - start; i < fromEnd; i++) {
+				int key = fromKeys[i];
+				int to = toStart + offsets[((key ^ Integer.MIN_VALUE) >>> shift) & mask]++;
+				toKeys[to] = key;
+				toValues[to] = fromValues[i];
+			}
+
+			int[] tmpKeys = fromKeys;
+			fromKeys = toKeys;
+			toKeys = tmpKeys;
+			int[] tmpValues = fromValues;
+			fromValues = toValues;
+			toValues = tmpValues;
+			int tmpStart = fromStart;
+			fromStart = toStart;
+			toStart = tmpStart;
+		}
+
+		if (fromKeys != keys) {
+			System.arraycopy(fromKeys, 0, keys, start, end - start);
+			System.arraycopy(fromValues, 0, values, start, end - start);
+		}
+	}
+
+	private static void merge(int[] keys, int[] values, int start, int middle, int end, int[] keyBuffer,
+			int[] valueBuffer) {
+		if (start == middle || middle == end || keys[middle - 1] <= keys[middle])
+			return;
+
+		int leftLength = middle - start;
+		int rightLength = end - middle;
+		if (leftLength <= keyBuffer.length && leftLength <= rightLength) {
+			System.arraycopy(keys, start, keyBuffer, 0, leftLength);
+			System.arraycopy(values, start, valueBuffer, 0, leftLength);
+			int i = 0;
+			int j = middle;
+			int to = start;
+			while (i < leftLength && j < end) {
+				if (keyBuffer[i] <= keys[j]) {
+					keys[to] = keyBuffer[i];
+					values[to++] = valueBuffer[i++];
+				} else {
+					keys[to] = keys[j];
+					values[to++] = values[j++];
+				}
+			}
+			System.arraycopy(keyBuffer, i, keys, to, leftLength - i);
+			System.arraycopy(valueBuffer, i, values, to, leftLength - i);
+		} else if (rightLength <= keyBuffer.length) {
+			System.arraycopy(keys, middle, keyBuffer, 0, rightLength);
+			System.arraycopy(values, middle, valueBuffer, 0, rightLength);
+			int i = middle - 1;
+			int j = rightLength - 1;
+			int to = end - 1;
+			while (i >= start && j >= 0) {
+				if (keys[i] > keyBuffer[j]) {
+					keys[to] = keys[i];
+					values[to--] = values[i--];
+				} else {
+					keys[to] = keyBuffer[j];
+					values[to--] = valueBuffer[j--];
+				}
+			}
+			System.arraycopy(keyBuffer, 0, keys, start, j + 1);
+			System.arraycopy(valueBuffer, 0, values, start, j + 1);
+		} else {
+			// neither run fits: split both around one key, swap the inner parts and merge both halves
+			int leftCut;
+			int rightCut;
+			if (leftLength >= rightLength) {
+				leftCut = start + leftLength / 2;
+				rightCut = lowerBound(keys, middle, end, keys[leftCut]);
+			} else {
+				rightCut = middle + rightLength / 2;
+				leftCut = upperBound(keys, start, middle, keys[rightCut]);
+			}
+			rotate(keys, values, leftCut, middle, rightCut);
+			int newMiddle = leftCut + (rightCut - middle);
+			merge(keys, values, start, leftCut, newMiddle, keyBuffer, valueBuffer);
+			merge(keys, values, newMiddle, rightCut, end, keyBuffer, valueBuffer);
+		}
+	}
+
+	private static void rotate(int[] keys, int[] values, int start, int middle, int end) {
+		reverse(keys, values, start, middle);
+		reverse(keys, values, middle, end);
+		reverse(keys, values, start, end);
+	}
+
+	private static void reverse(int[] keys, int[] values, int start, int end) {
+		for (int i = start, j = end - 1; i < j; i++, j--) {
+			int key = keys[i];
+			keys[i] = keys[j];
+			keys[j] = key;
+			int value = values[i];
+			values[i] = values[j];
+			values[j] = value;
+		}
+	}
+
+	private static void insertionSort(int[] keys, int[] values, int start, int end) {
+		for (int i = start + 1; i < end; i++) {
+			int key = keys[i];
+			int value = values[i];
+			int j = i - 1;
+			while (j >= start && keys[j] > key) {
+				keys[j + 1] = keys[j];
+				values[j + 1] = values[j];
+				j--;
+			}
+			keys[j + 1] = key;
+			values[j + 1] = value;
+		}
+	}
+
+	/**
+	 * Returns the first index of [start, end) whose key is not below {@code key}.
+	 */
+	private static int lowerBound(int[] keys, int start, int end, int key) {
+		while (start < end) {
+			int middle = (start + end) >>> 1;
+			if (keys[middle] < key)
+				start = middle + 1;
+			else
+				end = middle;
+		}
+		return start;
+	}
+
+	/**
+	 * Returns the first index of [start, end) whose key is above {@code key}.
+	 */
+	private static int upperBound(int[] keys, int start, int end, int key) {
+		while (start < end) {
+			int middle = (start + end) >>> 1;
+			if (keys[middle] <= key)
+				start = middle + 1;
+			else
+				end = middle;
+		}
+		return start;
+	}
+
+	/**
+	 * Counts the digits of all passes in a single read of the keys of [start, end). The common 8- and 11-bit
+	 * digits get loops with one counter array per pass and constant shifts, free of the inner pass loop.
+	 */
+	private static int[][] histograms(int[] array, int start, int end, int digitBits, int passes) {
+		int mask = (1 << digitBits) - 1;
+		int[][] counts = new int[passes][1 << digitBits];
+		if (digitBits == 8) {
+			int[] c0 = counts[0], c1 = counts[1], c2 = counts[2], c3 = counts[3];
+			for (int i = start; i < end; i++) {
+				int key = array[i] ^ Integer.MIN_VALUE;
+				c0[key & 0xFF]++;
+				c1[(key >>> 8) & 0xFF]++;
+				c2[(key >>> 16) & 0xFF]++;
+				c3[key >>> 24]++;
+			}
+			return counts;
+		}
+		if (digitBits == 11) {
+			int[] c0 = counts[0], c1 = counts[1], c2 = counts[2];
+			for (int i = start; i < end; i++) {
+				int key = array[i] ^ Integer.MIN_VALUE;
+				c0[key & 0x7FF]++;
+				c1[(key >>> 11) & 0x7FF]++;
+				c2[key >>> 22]++;
+			}
+			return counts;
+		}
+
+		for (int i = start; i < end; i++) {
+			int key = array[i] ^ Integer.MIN_VALUE;
+			for (int pass = 0; pass < passes; pass++)
+				counts[pass][(key >>> (pass * digitBits)) & mask]++;
+		}
+		return counts;
+	}
+
+	private static boolean isConstant(int[] counts, int length) {
+		for (int count : counts) {
+			if (count == length)
+				return true;
+			if (count != 0)
+				return false;
+		}
+		return false;
+	}
+
+	/**
+	 * Turns the counts into the start offset of every bucket.
+	 */
+	private static void toStartOffsets(int[] counts) {
+		int sum = 0;
+		for (int i = 0; i < counts.length; i++) {
+			int count = counts[i];
+			counts[i] = sum;
+			sum += count;
+		}
+	}
+
 	public static void main(String[] args) {
-		int[] a = {23, 22, 21, 9, 8, 7, 6, 5, 4, 3, 2, 1, 0};
-		sort(a, 10);
+		int[] a = {23, 22, 21, 9, 8, 7, 6, 5, 4, 3, 2, 1, 0, -1, -300, Integer.MIN_VALUE, Integer.MAX_VALUE};
+		sort(a, 256);
 		System.out.println(java.util.Arrays.toString(a));
 	}
 }
@@ -0,0 +1,309 @@
+package algorithms;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * American flag sort for files of big-endian ints or longs, the format of
+ * {@link java.io.DataOutputStream}, that are larger than memory. The first pass over a file builds the
+ * histogram of the top byte from large blocks read into one reused direct buffer; the second pass
+ * scatters the records into one spill file per non-empty bucket through large buffered writes. The buckets
+ * are then handled in order: one that fits into the memory budget is read, sorted by {@link AFS} and
+ * appended to the output, a larger one is split again by its next byte. All file access is sequential, and a bucket that holds a
+ * single key or a file whose records share their top byte is passed on without copying it.
+ * <p>
+ * Files are read with positional channel reads rather than mapped: a file with a live mapping cannot be
+ * deleted on Windows, and spill files are deleted as soon as they are consumed.
+ */
+public class ExternalAFS {
+
+	/**
+	 * Bytes read at once from a file, a multiple of every record width.
+	 */
+	private static final int READ_BUFFER_BYTES = 1 << 20;
+
+	/**
+	 * Write buffer per bucket, so scattering keeps 256 of these in flight.
+	 */
+	private static final int SPILL_BUFFER_BYTES = 1 << 16;
+
+	/**
+	 * Upper bound for the memory budget, as in-memory buckets are sorted in a single primitive array.
+	 */
+	private static final long MAX_MEMORY_BYTES = Integer.MAX_VALUE - 8L;
+
+	private enum Width {
+		INT(Integer.BYTES) {
+			@Override
+			int digit(ByteBuffer records, int index, int shift) {
+				return ((records.getInt(index) ^ Integer.MIN_VALUE) >>> shift) & 0xFF;
+			}
+
+			@Override
+			void copy(ByteBuffer records, int index, ByteBuffer to) {
+				to.putInt(records.getInt(index));
+			}
+
+			@Override
+			void sortInMemory(FileChannel in, int count, FileChannel out, ByteBuffer block) throws IOException {
+				int[] keys = new int[count];
+				for (int from = 0; from < count; ) {
+					int length = Math.min(count - from, READ_BUFFER_BYTES / bytes);
+					readFully(in, block, (long) from * bytes, length * bytes);
+					block.asIntBuffer().get(keys, from, length);
+					from += length;
+				}
+
+				AFS.sortBinary(keys);
+
+				for (int from = 0; from < count; ) {
+					int length = Math.min(count - from, READ_BUFFER_BYTES / bytes);
+					block.clear();
+					block.asIntBuffer().put(keys, from, length);
+					block.limit(length * bytes);
+					writeFully(out, block);
+					from += length;
+				}
+			}
+		},
+		LONG(Long.BYTES) {
+			@Override
+			int digit(ByteBuffer records, int index, int shift) {
+				return (int) ((records.getLong(index) ^ Long.MIN_VALUE) >>> shift) & 0xFF;
+			}
+
+			@Override
+			void copy(ByteBuffer records, int index, ByteBuffer to) {
+				to.putLong(records.getLong(index));
+			}
+
+			@Override
+			void sortInMemory(FileChannel in, int count, FileChannel out, ByteBuffer block) throws IOException {
+				long[] keys = new long[count];
+				for (int from = 0; from < count; ) {
+					int length = Math.min(count - from, READ_BUFFER_BYTES / bytes);
+					readFully(in, block, (long) from * bytes, length * bytes);
+					block.asLongBuffer().get(keys, from, length);
+					from += length;
+				}
+
+				AFS.sort(keys);
+
+				for (int from = 0; from < count; ) {
+					int length = Math.min(count - from, READ_BUFFER_BYTES / bytes);
+					block.clear();
+					block.asLongBuffer().put(keys, from, length);
+					block.limit(length * bytes);
+					writeFully(out, block);
+					from += length;
+				}
+			}
+		};
+
+		final int bytes;
+
+		Width(int bytes) {
+			this.bytes = bytes;
+		}
+
+		/**
+		 * Returns the unsigned byte at {@code shift} of the sign-flipped record at the byte index.
+		 */
+		abstract int digit(ByteBuffer records, int index, int shift);
+
+		abstract void copy(ByteBuffer records, int index, ByteBuffer to);
+
+		/**
+		 * Sorts the first count records of the channel on heap and appends them to the output, reading and
+		 * writing through the block buffer.
+		 */
+		abstract void sortInMemory(FileChannel in, int count, FileChannel out, ByteBuffer block) throws IOException;
+	}
+
+	public ExternalAFS() {
+	}
+
+	/**
+	 * Sorts a file of ints into the output file, keeping at most about {@code memoryBytes} of records on heap
+	 * at once. Spill files go to {@code spillDirectory} and are deleted as soon as they are consumed. The
+	 * output must not be the input file.
+	 */
+	public static void sortInts(Path input, Path output, Path spillDirectory, long memoryBytes) throws IOException {
+		sort(Width.INT, input, output, spillDirectory, memoryBytes);
+	}
+
+	/**
+	 * Sorts a file of longs like {@link #sortInts(Path, Path, Path, long)}.
+	 */
+	public static void sortLongs(Path input, Path output, Path spillDirectory, long memoryBytes) throws IOException {
+		sort(Width.LONG, input, output, spillDirectory, memoryBytes);
+	}
+
+	private static void sort(Width width, Path input, Path output, Path spillDirectory, long memoryBytes) throws IOException {
+		// opening the output truncates it, which would wipe the input before it is read
+		if (Files.exists(output) && Files.isSameFile(input, output))
+			throw new IllegalArgumentException("Cannot sort " + input + " onto itself, the output must be another file");
+		try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+			// checked before the output is opened, as opening it truncates an existing file
+			if (in.size() % width.bytes != 0)
+				throw new IOException(input + " holds " + in.size() + " bytes, not a whole number of " + width.bytes + "-byte records");
+
+			try (FileChannel out = FileChannel.open(output, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				long budget = Math.max(width.bytes, Math.min(memoryBytes, MAX_MEMORY_BYTES));
+				ByteBuffer block = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+				sort(width, in, in.size() / width.bytes, out, (width.bytes - 1) * Byte.SIZE, spillDirectory, budget, block);
+			}
+		}
+	}
+
+	/**
+	 * Appends the sorted records of the channel to the output. All records agree on the bytes above
+	 * {@code shift}.
+	 */
+	private static void sort(Width width, FileChannel in, long count, FileChannel out, int shift, Path spillDirectory,
+			long budget, ByteBuffer block) throws IOException {
+		if (count * width.bytes <= budget) {
+			width.sortInMemory(in, (int) count, out, block);
+			return;
+		}
+
+		long[] counts = histogram(width, in, count, shift, block);
+		while (isSingleBucket(counts, count)) {
+			if (shift == 0) {
+				// every record holds the same key
+				transferFully(in, count * width.bytes, out);
+				return;
+			}
+			// the records need no copy to be split by their next byte
+			shift -= Byte.SIZE;
+			counts = histogram(width, in, count, shift, block);
+		}
+
+		Path[] spills = scatter(width, in, count, counts, shift, spillDirectory, block);
+		try {
+			for (int digit = 0; digit < spills.length; digit++) {
+				if (spills[digit] == null)
+					continue;
+
+				try (FileChannel bucket = FileChannel.open(spills[digit], StandardOpenOption.READ)) {
+					if (shift == 0)
+						transferFully(bucket, counts[digit] * width.bytes, out);
+					else
+						sort(width, bucket, counts[digit], out, shift - Byte.SIZE, spillDirectory, budget, block);
+				}
+				Files.delete(spills[digit]);
+				spills[digit] = null;
+			}
+		} finally {
+			for (Path spill : spills) {
+				if (spill != null)
+					Files.deleteIfExists(spill);
+			}
+		}
+	}
+
+	private static boolean isSingleBucket(long[] counts, long count) {
+		for (long bucketCount : counts) {
+			if (bucketCount == count)
+				return true;
+		}
+		return false;
+	}
+
+	private static long[] histogram(Width width, FileChannel in, long count, int shift, ByteBuffer block) throws IOException {
+		long[] counts = new long[256];
+		long size = count * width.bytes;
+		for (long position = 0; position < size; position += READ_BUFFER_BYTES) {
+			readFully(in, block, position, (int) Math.min(READ_BUFFER_BYTES, size - position));
+			for (int i = 0, limit = block.limit(); i < limit; i += width.bytes)
+				counts[width.digit(block, i, shift)]++;
+		}
+		return counts;
+	}
+
+	/**
+	 * Copies every record into the spill file of its bucket and returns the files, null for empty buckets.
+	 */
+	private static Path[] scatter(Width width, FileChannel in, long count, long[] counts, int shift, Path spillDirectory,
+			ByteBuffer block) throws IOException {
+		Path[] spills = new Path[256];
+		FileChannel[] channels = new FileChannel[256];
+		ByteBuffer[] buffers = new ByteBuffer[256];
+		try {
+			for (int digit = 0; digit < 256; digit++) {
+				if (counts[digit] == 0)
+					continue;
+				spills[digit] = Files.createTempFile(spillDirectory, "afs-", ".bucket");
+				channels[digit] = FileChannel.open(spills[digit], StandardOpenOption.WRITE);
+				buffers[digit] = ByteBuffer.allocateDirect(SPILL_BUFFER_BYTES);
+			}
+
+			long size = count * width.bytes;
+			for (long position = 0; position < size; position += READ_BUFFER_BYTES) {
+				readFully(in, block, position, (int) Math.min(READ_BUFFER_BYTES, size - position));
+				for (int i = 0, limit = block.limit(); i < limit; i += width.bytes) {
+					int digit = width.digit(block, i, shift);
+					ByteBuffer buffer = buffers[digit];
+					if (buffer.remaining() < width.bytes) {
+						buffer.flip();
+						writeFully(channels[digit], buffer);
+						buffer.clear();
+					}
+					width.copy(block, i, buffer);
+				}
+			}
+
+			for (int digit = 0; digit < 256; digit++) {
+				if (buffers[digit] != null) {
+					buffers[digit].flip();
+					writeFully(channels[digit], buffers[digit]);
+				}
+			}
+			return spills;
+		} catch (IOException | RuntimeException e) {
+			for (Path spill : spills) {
+				if (spill != null)
+					Files.deleteIfExists(spill);
+			}
+			throw e;
+		} finally {
+			for (FileChannel channel : channels) {
+				if (channel != null)
+					channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads {@code length} bytes of the channel from the position into the block, leaving them between its
+	 * index 0 and its limit.
+	 */
+	private static void readFully(FileChannel in, ByteBuffer block, long position, int length) throws IOException {
+		block.clear();
+		block.limit(length);
+		while (block.hasRemaining()) {
+			if (in.read(block, position + block.position()) < 0)
+				throw new EOFException("File ended " + block.remaining() + " bytes early");
+		}
+		block.flip();
+	}
+
+	private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining())
+			out.write(buffer);
+	}
+
+	/**
+	 * Appends the first {@code size} bytes of the channel to the output, through the kernel where possible.
+	 */
+	private static void transferFully(FileChannel in, long size, FileChannel out) throws IOException {
+		for (long position = 0; position < size; )
+			position += in.transferTo(position, size - position, out);
+	}
+}
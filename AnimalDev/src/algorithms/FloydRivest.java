@@ -0,0 +1,63 @@
+package algorithms;
+
+/**
+ * Floyd-Rivest selection with the same contract as {@link Quickselect#quickselect(int[], int, int, int)}.
+ * Before partitioning a large range it recursively selects within a small sample around the expected
+ * position of the n-th element, so the pivot lands very close to it. That takes about
+ * {@code n + min(k, n - k)} comparisons instead of the roughly 3.4n of random pivots.
+ */
+public class FloydRivest {
+
+	/**
+	 * Ranges up to this size are partitioned around the current n-th element without sampling.
+	 */
+	private static final int SAMPLE_THRESHOLD = 600;
+
+	public FloydRivest() {
+	}
+
+	public static int select(int[] array, int left, int right, int n) {
+		while (right > left) {
+			if (right - left > SAMPLE_THRESHOLD) {
+				double size = right - left + 1;
+				double rank = n - left + 1;
+				double z = Math.log(size);
+				double sample = 0.5 * Math.exp(2 * z / 3);
+				double deviation = 0.5 * Math.sqrt(z * sample * (size - sample) / size) * Math.signum(rank - size / 2);
+				int sampleLeft = Math.max(left, (int) (n - rank * sample / size + deviation));
+				int sampleRight = Math.min(right, (int) (n + (size - rank) * sample / size + deviation));
+				select(array, sampleLeft, sampleRight, n);
+			}
+
+			int pivotValue = array[n];
+			int i = left;
+			int j = right;
+			Quickselect.swap(array, left, n);
+			if (array[right] > pivotValue)
+				Quickselect.swap(array, left, right);
+
+			while (i < j) {
+				Quickselect.swap(array, i, j);
+				i++;
+				j--;
+				while (array[i] < pivotValue)
+					i++;
+				while (array[j] > pivotValue)
+					j--;
+			}
+
+			if (array[left] == pivotValue)
+				Quickselect.swap(array, left, j);
+			else {
+				j++;
+				Quickselect.swap(array, j, right);
+			}
+
+			if (j <= n)
+				left = j + 1;
+			if (n <= j)
+				right = j - 1;
+		}
+		return array[n];
+	}
+}
@@ -0,0 +1,244 @@
+package algorithms;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Quickselect over a file of big-endian ints, the format of {@link java.io.DataOutputStream}, without
+ * loading it onto the heap. The file is mapped read-only through consecutive windows of 1 GB, like the
+ * input of {@link ExternalAFS}, and stays untouched. Every pass streams the current keys once and writes
+ * those below the pivot and those above it to two scratch files; the selection ends if the rank falls
+ * among the keys equal to the pivot, and otherwise continues on the one file that holds it while the
+ * other is deleted at once. Once the remaining keys fit into {@link #HEAP_SELECT_THRESHOLD} ints they are
+ * read onto the heap and {@link Quickselect#introselect(int[], int, int, int)} finishes.
+ * <p>
+ * Scratch files are only written and read through channels, never mapped, since a file with a live
+ * mapping cannot be deleted on Windows.
+ */
+public class MappedQuickselect {
+
+	/**
+	 * Ints per mapped window of the input, 1 GB of them.
+	 */
+	private static final int WINDOW_SHIFT = 28;
+	private static final int WINDOW_INTS = 1 << WINDOW_SHIFT;
+	private static final int WINDOW_MASK = WINDOW_INTS - 1;
+
+	/**
+	 * Ranges of at most this many ints, 64 MB, are read onto the heap and selected there.
+	 */
+	private static final int HEAP_SELECT_THRESHOLD = 1 << 24;
+
+	/**
+	 * Bytes of every read and write buffer.
+	 */
+	private static final int BUFFER_BYTES = 1 << 20;
+
+	/**
+	 * One side of a partition, appended to its scratch file through a reused direct buffer.
+	 */
+	private static final class Spill implements Closeable {
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		long count;
+
+		Spill(Path file, ByteBuffer buffer) throws IOException {
+			this.channel = FileChannel.open(file, StandardOpenOption.WRITE);
+			this.buffer = buffer;
+			buffer.clear();
+		}
+
+		void add(int key) throws IOException {
+			if (buffer.remaining() < Integer.BYTES)
+				flush();
+			buffer.putInt(key);
+			count++;
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			buffer.clear();
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				flush();
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	public MappedQuickselect() {
+	}
+
+	/**
+	 * Returns the int with rank n, counted from 0, of the file. Scratch files, together at most as large as
+	 * the input, are created in {@code scratchDirectory} and deleted before returning.
+	 */
+	public static int select(Path file, long n, Path scratchDirectory) throws IOException {
+		try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = source.size();
+			if (size % Integer.BYTES != 0)
+				throw new IOException(file + " holds " + size + " bytes, not a whole number of ints");
+			long count = size / Integer.BYTES;
+			if (n < 0 || n >= count)
+				throw new IllegalArgumentException("Rank must lie in [0, " + count + "): " + n);
+
+			IntBuffer[] windows = map(source, count);
+			if (count <= HEAP_SELECT_THRESHOLD) {
+				int[] keys = new int[(int) count];
+				int from = 0;
+				for (IntBuffer window : windows) {
+					IntBuffer view = window.duplicate();
+					int length = view.remaining();
+					view.get(keys, from, length);
+					from += length;
+				}
+				return Quickselect.introselect(keys, 0, keys.length - 1, (int) n);
+			}
+
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			int pivotValue = medianOfThree(get(windows, random.nextLong(count)), get(windows, random.nextLong(count)),
+					get(windows, random.nextLong(count)));
+			ByteBuffer block = ByteBuffer.allocateDirect(BUFFER_BYTES);
+			ByteBuffer belowBuffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+			ByteBuffer aboveBuffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+			List<Path> scratchFiles = new ArrayList<>();
+			try {
+				Path below = createScratch(scratchDirectory, scratchFiles);
+				Path above = createScratch(scratchDirectory, scratchFiles);
+				long belowCount;
+				long aboveCount;
+				try (Spill belowSpill = new Spill(below, belowBuffer); Spill aboveSpill = new Spill(above, aboveBuffer)) {
+					for (IntBuffer window : windows)
+						partition(window, pivotValue, belowSpill, aboveSpill);
+					belowCount = belowSpill.count;
+					aboveCount = aboveSpill.count;
+				}
+
+				for (;;) {
+					Path current;
+					if (n < belowCount) {
+						current = below;
+						delete(above, scratchFiles);
+						count = belowCount;
+					} else if (n < count - aboveCount) {
+						return pivotValue;
+					} else {
+						current = above;
+						delete(below, scratchFiles);
+						n -= count - aboveCount;
+						count = aboveCount;
+					}
+
+					try (FileChannel in = FileChannel.open(current, StandardOpenOption.READ)) {
+						if (count <= HEAP_SELECT_THRESHOLD) {
+							int[] keys = new int[(int) count];
+							for (int from = 0; from < keys.length; ) {
+								int length = Math.min(keys.length - from, BUFFER_BYTES / Integer.BYTES);
+								readFully(in, block, (long) from * Integer.BYTES, length * Integer.BYTES);
+								block.asIntBuffer().get(keys, from, length);
+								from += length;
+							}
+							return Quickselect.introselect(keys, 0, keys.length - 1, (int) n);
+						}
+
+						pivotValue = medianOfThree(readInt(in, block, random.nextLong(count)),
+								readInt(in, block, random.nextLong(count)), readInt(in, block, random.nextLong(count)));
+						below = createScratch(scratchDirectory, scratchFiles);
+						above = createScratch(scratchDirectory, scratchFiles);
+						try (Spill belowSpill = new Spill(below, belowBuffer); Spill aboveSpill = new Spill(above, aboveBuffer)) {
+							long bytes = count * Integer.BYTES;
+							for (long position = 0; position < bytes; position += BUFFER_BYTES) {
+								readFully(in, block, position, (int) Math.min(BUFFER_BYTES, bytes - position));
+								partition(block.asIntBuffer(), pivotValue, belowSpill, aboveSpill);
+							}
+							belowCount = belowSpill.count;
+							aboveCount = aboveSpill.count;
+						}
+					}
+					delete(current, scratchFiles);
+				}
+			} finally {
+				for (Path scratch : scratchFiles)
+					Files.deleteIfExists(scratch);
+			}
+		}
+	}
+
+	/**
+	 * Appends the keys of the chunk below the pivot to one spill and those above it to the other.
+	 */
+	private static void partition(IntBuffer keys, int pivotValue, Spill below, Spill above) throws IOException {
+		for (int i = 0, limit = keys.limit(); i < limit; i++) {
+			int key = keys.get(i);
+			if (key < pivotValue)
+				below.add(key);
+			else if (key > pivotValue)
+				above.add(key);
+		}
+	}
+
+	private static IntBuffer[] map(FileChannel channel, long count) throws IOException {
+		IntBuffer[] windows = new IntBuffer[(int) ((count + WINDOW_INTS - 1) >>> WINDOW_SHIFT)];
+		for (int window = 0; window < windows.length; window++) {
+			long first = (long) window << WINDOW_SHIFT;
+			long ints = Math.min(WINDOW_INTS, count - first);
+			windows[window] = channel.map(FileChannel.MapMode.READ_ONLY, first * Integer.BYTES, ints * Integer.BYTES)
+					.asIntBuffer();
+		}
+		return windows;
+	}
+
+	private static int get(IntBuffer[] windows, long index) {
+		return windows[(int) (index >>> WINDOW_SHIFT)].get((int) index & WINDOW_MASK);
+	}
+
+	private static Path createScratch(Path scratchDirectory, List<Path> scratchFiles) throws IOException {
+		Path scratch = Files.createTempFile(scratchDirectory, "quickselect-", ".scratch");
+		scratchFiles.add(scratch);
+		return scratch;
+	}
+
+	private static void delete(Path scratch, List<Path> scratchFiles) throws IOException {
+		Files.delete(scratch);
+		scratchFiles.remove(scratch);
+	}
+
+	private static int readInt(FileChannel in, ByteBuffer block, long index) throws IOException {
+		readFully(in, block, index * Integer.BYTES, Integer.BYTES);
+		return block.getInt(0);
+	}
+
+	/**
+	 * Reads {@code length} bytes of the channel from the position into the block, leaving them between its
+	 * index 0 and its limit.
+	 */
+	private static void readFully(FileChannel in, ByteBuffer block, long position, int length) throws IOException {
+		block.clear();
+		block.limit(length);
+		while (block.hasRemaining()) {
+			if (in.read(block, position + block.position()) < 0)
+				throw new EOFException("File ended " + block.remaining() + " bytes early");
+		}
+		block.flip();
+	}
+
+	private static int medianOfThree(int a, int b, int c) {
+		return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+	}
+}
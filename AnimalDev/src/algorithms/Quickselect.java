@@ -1,7 +1,38 @@
 package algorithms;
 
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
+
 public class Quickselect {
 
+	/**
+	 * Number of partitions that may each keep more than three quarters of the range before
+	 * {@link #introselect(int[], int, int, int)} switches to median-of-medians pivots.
+	 */
+	private static final int MAX_BAD_PARTITIONS = 3;
+
+	/**
+	 * Number of keys whose comparison results {@link #blockPartition(int[], int, int, int)} buffers per side.
+	 */
+	private static final int BLOCK_SIZE = 128;
+
+	/**
+	 * Ranges up to this size are left to the sequential loop by
+	 * {@link #parallelQuickselect(int[], int, int, int)}.
+	 */
+	private static final int PARALLEL_THRESHOLD = 1 << 17;
+
+	/**
+	 * Ranges up to this size are finished with insertion sort by {@link #partialSort(int[], int)}.
+	 */
+	private static final int PARTIAL_SORT_INSERTION_THRESHOLD = 16;
+
 	public Quickselect() {
 	}
 
@@ -22,6 +53,355 @@ public class Quickselect {
 		}
 	}
 
+	/**
+	 * Selects like {@link #quickselect(int[], int, int, int)} on absolute buffer indices. Direct and mapped
+	 * buffers are partitioned where they live, without a heap copy.
+	 */
+	public static int quickselect(IntBuffer buffer, int left, int right, int n) {
+		if (buffer.hasArray()) {
+			int offset = buffer.arrayOffset();
+			return quickselect(buffer.array(), offset + left, offset + right, offset + n);
+		}
+
+		while (left < right) {
+			int pivot = randomPivot(left, right);
+			pivot = partition(buffer, left, right, pivot);
+
+			if (n == pivot)
+				return buffer.get(n);
+			else if (n < pivot)
+				right = pivot - 1;
+			else
+				left = pivot + 1;
+		}
+		return buffer.get(left);
+	}
+
+	/**
+	 * Selects like {@link #quickselect(int[], int, int, int)}, but watches how much every partition
+	 * shrinks the range. Once random pivots have stalled {@link #MAX_BAD_PARTITIONS} times it switches to
+	 * median-of-medians pivots and groups the keys equal to the pivot, which bounds the remaining work
+	 * to linear time even for adversarial or duplicate-heavy input.
+	 */
+	public static int introselect(int[] array, int left, int right, int n) {
+		int badPartitions = 0;
+
+		while (left < right) {
+			int size = right - left + 1;
+			boolean fallback = badPartitions >= MAX_BAD_PARTITIONS;
+			int pivot = fallback ? medianOfMedians(array, left, right) : randomPivot(left, right);
+			pivot = partition(array, left, right, pivot);
+
+			if (n == pivot)
+				return array[n];
+			else if (n < pivot)
+				right = pivot - 1;
+			else if (fallback) {
+				int pivotValue = array[pivot];
+				int equalEnd = pivot + 1;
+				for (int i = pivot + 1; i <= right; i++) {
+					if (array[i] == pivotValue)
+						swap(array, equalEnd++, i);
+				}
+				if (n < equalEnd)
+					return array[n];
+				left = equalEnd;
+			} else
+				left = pivot + 1;
+
+			if (right - left + 1 > size / 4 * 3)
+				badPartitions++;
+		}
+		return array[left];
+	}
+
+	/**
+	 * Selects like {@link #quickselect(int[], int, int, int)} with a three-way (Bentley-McIlroy)
+	 * partition: keys equal to the pivot are gathered in the middle, and the selection ends as soon as
+	 * {@code n} falls into that band. Keys are only swapped when they are on the wrong side or equal to
+	 * the pivot, so inputs with few distinct values, and random inputs alike, take fewer swaps.
+	 */
+	public static int threeWayQuickselect(int[] array, int left, int right, int n) {
+		int[] band = new int[2];
+		while (left < right) {
+			threeWayPartition(array, left, right, randomPivot(left, right), band);
+			if (n < band[0])
+				right = band[0] - 1;
+			else if (n > band[1])
+				left = band[1] + 1;
+			else
+				return array[n];
+		}
+		return array[left];
+	}
+
+	/**
+	 * Partitions array[left..right] three ways around the value at {@code pivot}, Bentley-McIlroy style,
+	 * and stores the first and last index of the band of keys equal to it in band[0] and band[1].
+	 */
+	private static void threeWayPartition(int[] array, int left, int right, int pivot, int[] band) {
+		swap(array, left, pivot);
+		int pivotValue = array[left];
+
+		// array[left..p] and array[q..right] collect the keys equal to the pivot on the way
+		int i = left;
+		int j = right + 1;
+		int p = left;
+		int q = right + 1;
+		for (;;) {
+			while (array[++i] < pivotValue) {
+				if (i == right)
+					break;
+			}
+			while (pivotValue < array[--j]) {
+				if (j == left)
+					break;
+			}
+			if (i == j && array[i] == pivotValue)
+				swap(array, ++p, i);
+			if (i >= j)
+				break;
+
+			swap(array, i, j);
+			if (array[i] == pivotValue)
+				swap(array, ++p, i);
+			if (array[j] == pivotValue)
+				swap(array, --q, j);
+		}
+
+		i = j + 1;
+		for (int k = left; k <= p; k++)
+			swap(array, k, j--);
+		for (int k = right; k >= q; k--)
+			swap(array, k, i++);
+
+		// now array[left..j] < pivotValue, array[j + 1..i - 1] == pivotValue, array[i..right] > pivotValue
+		band[0] = j + 1;
+		band[1] = i - 1;
+	}
+
+	/**
+	 * Selects like {@link #quickselect(int[], int, int, int)}, but partitions large ranges across the
+	 * common ForkJoinPool: every worker counts the keys of its chunk that are smaller than and equal to
+	 * the pivot, and after a prefix sum scatters them into a scratch buffer, which is copied back in
+	 * parallel. Once the active range holds at most {@link #PARALLEL_THRESHOLD} keys the selection
+	 * continues with {@link #introselect(int[], int, int, int)}. The scratch buffer takes as many ints
+	 * as the range.
+	 */
+	public static int parallelQuickselect(int[] array, int left, int right, int n) {
+		if (right - left + 1 <= PARALLEL_THRESHOLD)
+			return introselect(array, left, right, n);
+
+		int chunks = 4 * ForkJoinPool.getCommonPoolParallelism();
+		int[] buffer = new int[right - left + 1];
+		int[] less = new int[chunks];
+		int[] equal = new int[chunks];
+		int[] greater = new int[chunks];
+
+		while (right - left + 1 > PARALLEL_THRESHOLD) {
+			int pivotValue = medianOfThree(array[randomPivot(left, right)], array[randomPivot(left, right)],
+					array[randomPivot(left, right)]);
+			int from = left;
+			int size = right - left + 1;
+
+			forEachChunk(chunks, chunk -> {
+				int end = from + chunkStart(chunk + 1, chunks, size);
+				int lessCount = 0;
+				int equalCount = 0;
+				for (int i = from + chunkStart(chunk, chunks, size); i < end; i++) {
+					lessCount += array[i] < pivotValue ? 1 : 0;
+					equalCount += array[i] == pivotValue ? 1 : 0;
+				}
+				less[chunk] = lessCount;
+				equal[chunk] = equalCount;
+			});
+
+			// turn the counts into every chunk's first write position in the buffer
+			int lessTotal = 0;
+			int equalTotal = 0;
+			for (int chunk = 0; chunk < chunks; chunk++) {
+				lessTotal += less[chunk];
+				equalTotal += equal[chunk];
+			}
+			int lessOffset = 0;
+			int equalOffset = lessTotal;
+			int greaterOffset = lessTotal + equalTotal;
+			for (int chunk = 0; chunk < chunks; chunk++) {
+				int chunkSize = chunkStart(chunk + 1, chunks, size) - chunkStart(chunk, chunks, size);
+				int lessCount = less[chunk];
+				int equalCount = equal[chunk];
+				less[chunk] = lessOffset;
+				equal[chunk] = equalOffset;
+				greater[chunk] = greaterOffset;
+				lessOffset += lessCount;
+				equalOffset += equalCount;
+				greaterOffset += chunkSize - lessCount - equalCount;
+			}
+
+			forEachChunk(chunks, chunk -> {
+				int lessTo = less[chunk];
+				int equalTo = equal[chunk];
+				int greaterTo = greater[chunk];
+				int end = from + chunkStart(chunk + 1, chunks, size);
+				for (int i = from + chunkStart(chunk, chunks, size); i < end; i++) {
+					int value = array[i];
+					if (value < pivotValue)
+						buffer[lessTo++] = value;
+					else if (value == pivotValue)
+						buffer[equalTo++] = value;
+					else
+						buffer[greaterTo++] = value;
+				}
+			});
+			forEachChunk(chunks, chunk -> {
+				int start = chunkStart(chunk, chunks, size);
+				System.arraycopy(buffer, start, array, from + start, chunkStart(chunk + 1, chunks, size) - start);
+			});
+
+			if (n < left + lessTotal)
+				right = left + lessTotal - 1;
+			else if (n < left + lessTotal + equalTotal)
+				return pivotValue;
+			else
+				left = left + lessTotal + equalTotal;
+		}
+		return introselect(array, left, right, n);
+	}
+
+	private static int chunkStart(int chunk, int chunks, int size) {
+		return (int) ((long) size * chunk / chunks);
+	}
+
+	private static void forEachChunk(int chunks, IntConsumer body) {
+		List<ForkJoinTask<?>> tasks = new ArrayList<>(chunks);
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			int current = chunk;
+			tasks.add(ForkJoinTask.adapt(() -> body.accept(current)));
+		}
+		ForkJoinTask.invokeAll(tasks);
+	}
+
+	private static int medianOfThree(int a, int b, int c) {
+		return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+	}
+
+	/**
+	 * Rearranges the array like C++ {@code std::nth_element}: array[n] receives the value it would have in
+	 * sorted order, no key before it is larger and no key after it is smaller. Runs in linear time in the
+	 * worst case by way of {@link #introselect(int[], int, int, int)}, and returns array[n].
+	 */
+	public static int nthElement(int[] array, int n) {
+		if (n < 0 || n >= array.length)
+			throw new IllegalArgumentException("Rank must lie in [0, " + array.length + "): " + n);
+		return introselect(array, 0, array.length - 1, n);
+	}
+
+	/**
+	 * Rearranges the array like C++ {@code std::partial_sort}: array[0..k) receives the k smallest keys in
+	 * ascending order, the remaining keys follow in no particular order. This is a quicksort over the same
+	 * {@link #partition(int[], int, int, int)} that never descends into a range starting at or after k, so
+	 * only the prefix gets sorted, in expected O(n + k log k) time.
+	 */
+	public static void partialSort(int[] array, int k) {
+		if (k < 0 || k > array.length)
+			throw new IllegalArgumentException("k must lie in [0, " + array.length + "]: " + k);
+		partialSort(array, 0, array.length - 1, k);
+	}
+
+	private static void partialSort(int[] array, int left, int right, int k) {
+		while (left < right && left < k) {
+			if (right - left < PARTIAL_SORT_INSERTION_THRESHOLD) {
+				AFS.insertionSort(array, left, right + 1);
+				return;
+			}
+
+			int pivot = randomPivot(left, right);
+			pivot = partition(array, left, right, pivot);
+
+			if (pivot == left) {
+				// the pivot is the smallest key, step over all of its copies at once
+				int pivotValue = array[pivot];
+				int equalEnd = pivot + 1;
+				for (int i = pivot + 1; i <= right; i++) {
+					if (array[i] == pivotValue)
+						swap(array, equalEnd++, i);
+				}
+				left = equalEnd;
+			} else {
+				partialSort(array, left, pivot - 1, k);
+				left = pivot + 1;
+			}
+		}
+	}
+
+	/**
+	 * Selects several order statistics at once and returns their values in the order of {@code ks}.
+	 * Every partition is three-way, like {@link #threeWayQuickselect(int[], int, int, int)}: all ranks
+	 * that fall into the band of keys equal to the pivot are resolved at once, and the sub-ranges on
+	 * either side are only handed the ranks inside them, so the cost stays close to that of a single
+	 * selection even on inputs with few distinct values. Afterwards every {@code array[k]} holds the value
+	 * it would have in the sorted array.
+	 */
+	public static int[] multiSelect(int[] array, int... ks) {
+		int[] ranks = ks.clone();
+		Arrays.sort(ranks);
+		if (ranks.length > 0 && (ranks[0] < 0 || ranks[ranks.length - 1] >= array.length))
+			throw new IllegalArgumentException("Ranks must lie in [0, " + array.length + "): " + Arrays.toString(ks));
+
+		multiSelect(array, 0, array.length - 1, ranks, 0, ranks.length, new int[2]);
+
+		int[] values = new int[ks.length];
+		for (int i = 0; i < ks.length; i++)
+			values[i] = array[ks[i]];
+		return values;
+	}
+
+	/**
+	 * Selects the sorted ranks[from, to), which all lie in [left, right].
+	 */
+	private static void multiSelect(int[] array, int left, int right, int[] ranks, int from, int to, int[] band) {
+		while (from < to && left < right) {
+			threeWayPartition(array, left, right, randomPivot(left, right), band);
+			int equalLeft = band[0];
+			int equalRight = band[1];
+
+			// ranks[below, above) fall into the band and are already in place
+			int below = from;
+			while (below < to && ranks[below] < equalLeft)
+				below++;
+			int above = below;
+			while (above < to && ranks[above] <= equalRight)
+				above++;
+
+			if (below - from < to - above) {
+				multiSelect(array, left, equalLeft - 1, ranks, from, below, band);
+				left = equalRight + 1;
+				from = above;
+			} else {
+				multiSelect(array, equalRight + 1, right, ranks, above, to, band);
+				right = equalLeft - 1;
+				to = below;
+			}
+		}
+	}
+
+	/**
+	 * Moves the medians of all groups of five to the front of the range, selects their median in place
+	 * and returns its index.
+	 */
+	private static int medianOfMedians(int[] array, int left, int right) {
+		int medians = left;
+		for (int groupLeft = left; groupLeft <= right; groupLeft += 5) {
+			int groupRight = Math.min(groupLeft + 4, right);
+			AFS.insertionSort(array, groupLeft, groupRight + 1);
+			swap(array, medians++, groupLeft + (groupRight - groupLeft) / 2);
+		}
+
+		int middle = left + (medians - 1 - left) / 2;
+		introselect(array, left, medians - 1, middle);
+		return middle;
+	}
+
 	public static int partition(int[] array, int left, int right, int pivot) {
 		int pivotValue = array[pivot];
 		swap(array, pivot, right);
@@ -37,6 +417,111 @@ public class Quickselect {
 		return storeIndex;
 	}
 
+	/**
+	 * Selects like {@link #quickselect(int[], int, int, int)}, partitioning with
+	 * {@link #blockPartition(int[], int, int, int, int[], int[])}.
+	 */
+	public static int blockQuickselect(int[] array, int left, int right, int n) {
+		int[] leftOffsets = new int[BLOCK_SIZE];
+		int[] rightOffsets = new int[BLOCK_SIZE];
+
+		while (left < right) {
+			int pivot = randomPivot(left, right);
+			pivot = blockPartition(array, left, right, pivot, leftOffsets, rightOffsets);
+
+			if (n == pivot)
+				return array[n];
+			else if (n < pivot)
+				right = pivot - 1;
+			else
+				left = pivot + 1;
+		}
+		return array[left];
+	}
+
+	/**
+	 * Partitions like {@link #partition(int[], int, int, int)}, with keys smaller than the pivot before it
+	 * and all others after it, but without a data-dependent branch in the hot loop (BlockQuicksort). Both
+	 * ends of the range are scanned a block at a time and the offsets of misplaced keys are recorded by
+	 * adding the comparison result to a counter; the recorded keys are then swapped pairwise in a batch.
+	 */
+	public static int blockPartition(int[] array, int left, int right, int pivot) {
+		return blockPartition(array, left, right, pivot, new int[BLOCK_SIZE], new int[BLOCK_SIZE]);
+	}
+
+	private static int blockPartition(int[] array, int left, int right, int pivot, int[] leftOffsets, int[] rightOffsets) {
+		int pivotValue = array[pivot];
+		swap(array, pivot, right);
+
+		// array[left..l) < pivotValue and array(r..right) >= pivotValue
+		int l = left;
+		int r = right - 1;
+		int leftStart = 0, leftCount = 0;
+		int rightStart = 0, rightCount = 0;
+
+		while (r - l + 1 > 2 * BLOCK_SIZE) {
+			if (leftCount == 0) {
+				leftStart = 0;
+				for (int i = 0; i < BLOCK_SIZE; i++) {
+					leftOffsets[leftCount] = i;
+					leftCount += array[l + i] >= pivotValue ? 1 : 0;
+				}
+			}
+			if (rightCount == 0) {
+				rightStart = 0;
+				for (int i = 0; i < BLOCK_SIZE; i++) {
+					rightOffsets[rightCount] = i;
+					rightCount += array[r - i] < pivotValue ? 1 : 0;
+				}
+			}
+
+			int count = Math.min(leftCount, rightCount);
+			for (int i = 0; i < count; i++)
+				swap(array, l + leftOffsets[leftStart + i], r - rightOffsets[rightStart + i]);
+
+			leftCount -= count;
+			rightCount -= count;
+			leftStart += count;
+			rightStart += count;
+			if (leftCount == 0)
+				l += BLOCK_SIZE;
+			if (rightCount == 0)
+				r -= BLOCK_SIZE;
+		}
+
+		// fewer than three blocks are left, including any block with unswapped keys
+		int storeIndex = l;
+		for (int i = l; i <= r; i++) {
+			if (array[i] < pivotValue) {
+				swap(array, storeIndex, i);
+				storeIndex++;
+			}
+		}
+		swap(array, right, storeIndex);
+		return storeIndex;
+	}
+
+	public static int partition(IntBuffer buffer, int left, int right, int pivot) {
+		int pivotValue = buffer.get(pivot);
+		swap(buffer, pivot, right);
+		int storeIndex = left;
+
+		for (int i = left; i < right; i++) {
+			if (buffer.get(i) < pivotValue) {
+				swap(buffer, storeIndex, i);
+				storeIndex++;
+			}
+		}
+		swap(buffer, right, storeIndex);
+		return storeIndex;
+	}
+
+	public static void swap(IntBuffer buffer, int a, int b) {
+		int tmp = buffer.get(a);
+		buffer.put(a, buffer.get(b));
+		buffer.put(b, tmp);
+	}
+
 	public static void swap(int[] array, int a, int b) {
 		int tmp = array[a];
 		array[a] = array[b];
@@ -44,6 +529,6 @@ public class Quickselect {
 	}
 
 	public static int randomPivot(int left, int right) {
-		return left + (int) Math.floor(Math.random() * (right - left + 1));
+		return ThreadLocalRandom.current().nextInt(left, right + 1);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package algorithms;
+
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Rough timing of every {@link SelectionEngine} across input sizes and ranks.
+ * Run it on a quiet machine, e.g. {@code java -Xmx2g algorithms.SelectionBenchmark}.
+ */
+public class SelectionBenchmark {
+	private static final int ROUNDS = 7;
+
+	public static void main(String[] args) {
+		Random random = new Random(42);
+
+		for (int size : new int[] {1_000, 100_000, 10_000_000}) {
+			int[] data = new int[size];
+			int[] duplicates = new int[size];
+			int[] sorted = new int[size];
+			for (int i = 0; i < size; i++) {
+				data[i] = random.nextInt();
+				duplicates[i] = random.nextInt(16);
+				sorted[i] = i;
+			}
+
+			for (double quantile : new double[] {0.001, 0.25, 0.5, 0.99}) {
+				int n = (int) (quantile * (size - 1));
+				System.out.println("random int[" + size + "], n = " + n);
+				for (SelectionEngine engine : SelectionEngine.values())
+					time(engine.name(), data, engine, n);
+			}
+
+			int n = size / 2;
+			System.out.println("sorted int[" + size + "], n = " + n);
+			for (SelectionEngine engine : SelectionEngine.values())
+				time(engine.name(), sorted, engine, n);
+
+			System.out.println("16 distinct values int[" + size + "], n = " + n);
+			for (SelectionEngine engine : SelectionEngine.values()) {
+				// two-way partitions peel off one pivot-equal key at a time there
+				boolean twoWay = engine == SelectionEngine.RANDOM_PIVOT || engine == SelectionEngine.BLOCK;
+				if (twoWay && size > 100_000)
+					System.out.printf("  %-16s      skipped%n", engine.name());
+				else
+					time(engine.name(), duplicates, engine, n);
+			}
+
+			int[] percentiles = {size / 2, (int) (0.9 * (size - 1)), (int) (0.99 * (size - 1)), (int) (0.999 * (size - 1))};
+			System.out.println("multiSelect p50/p90/p99/p999 int[" + size + "]");
+			time("random", data, copy -> Quickselect.multiSelect(copy, percentiles));
+			time("16 distinct", duplicates, copy -> Quickselect.multiSelect(copy, percentiles));
+		}
+	}
+
+	private static void time(String name, int[] data, SelectionEngine engine, int n) {
+		time(name, data, copy -> engine.select(copy, 0, copy.length - 1, n));
+	}
+
+	/**
+	 * Prints the best of {@link #ROUNDS} runs, each on a fresh copy of the input. Small inputs are
+	 * repeated so that every run takes long enough to measure.
+	 */
+	private static void time(String name, int[] data, Consumer<int[]> selection) {
+		int repeats = Math.max(1, 1_000_000 / data.length);
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			int[][] copies = new int[repeats][];
+			for (int i = 0; i < repeats; i++)
+				copies[i] = data.clone();
+
+			long begin = System.nanoTime();
+			for (int[] copy : copies)
+				selection.accept(copy);
+			best = Math.min(best, (System.nanoTime() - begin) / repeats);
+		}
+		System.out.printf("  %-16s %12.3f ms%n", name, best / 1e6);
+	}
+}
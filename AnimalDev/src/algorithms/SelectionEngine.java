@@ -0,0 +1,53 @@
+package algorithms;
+
+/**
+ * The interchangeable selection algorithms. Every engine rearranges {@code array[left..right]} so that
+ * {@code array[n]} holds the value it would have in sorted order, with no larger value before and no
+ * smaller value after it, and returns that value.
+ */
+public enum SelectionEngine {
+	RANDOM_PIVOT {
+		@Override
+		public int select(int[] array, int left, int right, int n) {
+			return Quickselect.quickselect(array, left, right, n);
+		}
+	},
+	INTROSELECT {
+		@Override
+		public int select(int[] array, int left, int right, int n) {
+			return Quickselect.introselect(array, left, right, n);
+		}
+	},
+	FLOYD_RIVEST {
+		@Override
+		public int select(int[] array, int left, int right, int n) {
+			return FloydRivest.select(array, left, right, n);
+		}
+	},
+	THREE_WAY {
+		@Override
+		public int select(int[] array, int left, int right, int n) {
+			return Quickselect.threeWayQuickselect(array, left, right, n);
+		}
+	},
+	BLOCK {
+		@Override
+		public int select(int[] array, int left, int right, int n) {
+			return Quickselect.blockQuickselect(array, left, right, n);
+		}
+	},
+	PARALLEL {
+		@Override
+		public int select(int[] array, int left, int right, int n) {
+			return Quickselect.parallelQuickselect(array, left, right, n);
+		}
+	},
+	RADIX {
+		@Override
+		public int select(int[] array, int left, int right, int n) {
+			return AFS.radixSelect(array, left, right, n);
+		}
+	};
+
+	public abstract int select(int[] array, int left, int right, int n);
+}
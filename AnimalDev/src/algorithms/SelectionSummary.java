@@ -0,0 +1,188 @@
+package algorithms;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Mergeable summary of one shard of data that answers rank queries below k exactly. Each shard keeps its
+ * k smallest values, selected locally with {@link StreamingSelector}, and its total count. The k smallest
+ * values of a union of shards are always among the k smallest of every shard, so merging summaries and
+ * keeping the k smallest of the merged lists gives the same answer as selecting over all data at once.
+ * <p>
+ * Summaries are immutable and travel between processes as {@link #toByteArray()}: the sorted values
+ * are written as a first value followed by variable-length deltas, which keeps dense data to a byte or
+ * two per value.
+ */
+public final class SelectionSummary {
+	private final int k;
+	private final long count;
+	private final int[] smallest;
+
+	private SelectionSummary(int k, long count, int[] smallest) {
+		this.k = k;
+		this.count = count;
+		this.smallest = smallest;
+	}
+
+	public static SelectionSummary of(int[] shard, int k) {
+		return of(new StreamingSelector(k).addAll(IntStream.of(shard)));
+	}
+
+	public static SelectionSummary of(StreamingSelector selector) {
+		return new SelectionSummary(selector.k(), selector.count(), selector.smallest());
+	}
+
+	/**
+	 * Returns the summary of the union of both shards.
+	 */
+	public SelectionSummary merge(SelectionSummary other) {
+		if (k != other.k)
+			throw new IllegalArgumentException("Cannot merge summaries for k = " + k + " and k = " + other.k);
+
+		int[] merged = new int[Math.min(k, smallest.length + other.smallest.length)];
+		int i = 0;
+		int j = 0;
+		for (int to = 0; to < merged.length; to++) {
+			if (j == other.smallest.length || (i < smallest.length && smallest[i] <= other.smallest[j]))
+				merged[to] = smallest[i++];
+			else
+				merged[to] = other.smallest[j++];
+		}
+		return new SelectionSummary(k, count + other.count, merged);
+	}
+
+	/**
+	 * Returns the value with rank n, counted from 0, over all merged shards.
+	 */
+	public int select(int n) {
+		if (n < 0 || n >= smallest.length)
+			throw new IllegalArgumentException("Rank must lie in [0, " + smallest.length + "): " + n);
+		return smallest[n];
+	}
+
+	/**
+	 * Returns the k smallest values over all merged shards in ascending order.
+	 */
+	public int[] smallest() {
+		return smallest.clone();
+	}
+
+	public long count() {
+		return count;
+	}
+
+	public int k() {
+		return k;
+	}
+
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeInt(k);
+		out.writeLong(count);
+		out.writeInt(smallest.length);
+		long previous = 0;
+		for (int i = 0; i < smallest.length; i++) {
+			long delta = i == 0 ? smallest[0] & 0xFFFFFFFFL : (long) smallest[i] - previous;
+			writeVarLong(out, delta);
+			previous = smallest[i];
+		}
+	}
+
+	public static SelectionSummary readFrom(DataInput in) throws IOException {
+		// the bytes come from other processes, so nothing is allocated before the header is checked
+		int k = in.readInt();
+		if (k < 1)
+			throw new IOException("Corrupt summary: k = " + k);
+		long count = in.readLong();
+		if (count < 0)
+			throw new IOException("Corrupt summary: count = " + count);
+		int length = in.readInt();
+		if (length < 0 || length > Math.min(k, count))
+			throw new IOException("Corrupt summary: " + length + " values for k = " + k + " and count = " + count);
+
+		int[] smallest = new int[length];
+		long previous = 0;
+		for (int i = 0; i < smallest.length; i++) {
+			long delta = readVarLong(in);
+			long value = i == 0 ? (int) delta : previous + delta;
+			if ((i == 0 && delta > 0xFFFFFFFFL) || (i > 0 && (delta < 0 || value > Integer.MAX_VALUE)))
+				throw new IOException("Corrupt summary: value " + i + " is out of order or range");
+			smallest[i] = (int) value;
+			previous = value;
+		}
+		return new SelectionSummary(k, count, smallest);
+	}
+
+	public byte[] toByteArray() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + smallest.length * 2);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			writeTo(out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	public static SelectionSummary fromByteArray(byte[] bytes) {
+		try {
+			return readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void writeVarLong(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static long readVarLong(DataInput in) throws IOException {
+		long value = 0;
+		for (int shift = 0; ; shift += 7) {
+			if (shift >= Long.SIZE)
+				throw new IOException("Corrupt summary: variable-length value longer than " + Long.SIZE + " bits");
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+	}
+
+	/**
+	 * Summarises shards of random data on separate threads, ships the serialized summaries as a cluster
+	 * would and checks the merged answer against sorting everything.
+	 */
+	public static void main(String[] args) {
+		int shards = 8;
+		int k = 1000;
+		int[][] data = new int[shards][];
+		for (int i = 0; i < shards; i++)
+			data[i] = ThreadLocalRandom.current().ints(100_000, 0, 1_000_000).toArray();
+
+		List<byte[]> messages = IntStream.range(0, shards).parallel()
+				.mapToObj(shard -> of(data[shard], k).toByteArray())
+				.collect(Collectors.toList());
+		SelectionSummary global = messages.stream()
+				.map(SelectionSummary::fromByteArray)
+				.reduce(SelectionSummary::merge)
+				.get();
+
+		int[] all = Arrays.stream(data).flatMapToInt(Arrays::stream).sorted().toArray();
+		System.out.println("bytes shipped: " + messages.stream().mapToInt(message -> message.length).sum());
+		System.out.println("k-th smallest: " + global.select(k - 1) + ", expected " + all[k - 1]);
+		System.out.println("top-k matches: " + Arrays.equals(global.smallest(), Arrays.copyOf(all, k)));
+	}
+}
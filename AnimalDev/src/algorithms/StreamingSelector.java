@@ -0,0 +1,110 @@
+package algorithms;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+
+/**
+ * Selects the k smallest values of an input that does not have to fit into memory. Values are collected
+ * in a buffer of 2k ints; whenever it fills up, {@link Quickselect#introselect(int[], int, int, int)}
+ * partitions it around its k-th smallest value, everything above is dropped and that value becomes the
+ * cut below which later values have to fall to be kept at all. Memory stays O(k) for any input size.
+ * <p>
+ * Binary sources are read as big-endian ints, the format of {@link java.io.DataOutputStream#writeInt(int)}.
+ * An instance is not thread-safe.
+ */
+public class StreamingSelector {
+	private final int k;
+	private final int[] buffer;
+	private int size;
+	private boolean hasCut;
+	private int cut;
+	private long count;
+
+	public StreamingSelector(int k) {
+		if (k < 1 || k > Integer.MAX_VALUE / 2)
+			throw new IllegalArgumentException("k must lie in [1, " + Integer.MAX_VALUE / 2 + "]: " + k);
+		this.k = k;
+		this.buffer = new int[2 * k];
+	}
+
+	public void add(int value) {
+		count++;
+		// a value at or above the current k-th smallest can no longer change the k smallest
+		if (hasCut && value >= cut)
+			return;
+
+		buffer[size++] = value;
+		if (size == buffer.length)
+			compact();
+	}
+
+	public StreamingSelector addAll(IntStream values) {
+		values.sequential().forEach(this::add);
+		return this;
+	}
+
+	public StreamingSelector read(InputStream in) throws IOException {
+		return read(Channels.newChannel(in));
+	}
+
+	/**
+	 * Adds every int of the channel until its end. The channel is not closed.
+	 */
+	public StreamingSelector read(ReadableByteChannel channel) throws IOException {
+		ByteBuffer bytes = ByteBuffer.allocate(1 << 16);
+		while (channel.read(bytes) >= 0) {
+			bytes.flip();
+			while (bytes.remaining() >= Integer.BYTES)
+				add(bytes.getInt());
+			bytes.compact();
+		}
+		if (bytes.position() != 0)
+			throw new EOFException(bytes.position() + " trailing bytes do not form an int");
+		return this;
+	}
+
+	public int k() {
+		return k;
+	}
+
+	/**
+	 * Returns the number of values seen so far, including dropped ones.
+	 */
+	public long count() {
+		return count;
+	}
+
+	/**
+	 * Returns the k-th smallest value seen so far.
+	 */
+	public int kthSmallest() {
+		if (count < k)
+			throw new NoSuchElementException("Only " + count + " of " + k + " values seen");
+		if (!hasCut || size > k)
+			compact();
+		return cut;
+	}
+
+	/**
+	 * Returns the k smallest values seen so far in ascending order, or all values if fewer were seen.
+	 */
+	public int[] smallest() {
+		int[] values = Arrays.copyOf(buffer, size);
+		int length = Math.min(k, size);
+		Quickselect.partialSort(values, length);
+		return Arrays.copyOf(values, length);
+	}
+
+	private void compact() {
+		cut = Quickselect.introselect(buffer, 0, size - 1, k - 1);
+		size = k;
+		hasCut = true;
+	}
+}